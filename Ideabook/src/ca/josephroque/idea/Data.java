@@ -2,19 +2,22 @@ package ca.josephroque.idea;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeoutException;
 
 import javax.swing.JOptionPane;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
+import ca.josephroque.idea.config.BodyIndex;
 import ca.josephroque.idea.config.Category;
+import ca.josephroque.idea.config.DateIndex;
+import ca.josephroque.idea.config.IdeaCache;
+import ca.josephroque.idea.config.IdeaStore;
+import ca.josephroque.idea.config.NameIndex;
+import ca.josephroque.idea.config.TagIndex;
+import ca.josephroque.idea.gui.Notification;
 import ca.josephroque.idea.gui.PanelManager;
 import ca.josephroque.idea.gui.SubmitPanel;
+import ca.josephroque.idea.io.WriteQueue;
+import ca.josephroque.idea.io.XmlReader;
 
 /**
  * General methods related to managing the data created and used
@@ -45,15 +48,49 @@ public class Data {
 		//At most, this method can run for about a second. Try to not use it.
 		//And only call it from the shutdown hook. It isn't needed anywhere else.
 		PanelManager.getPanel(PanelManager.getCurrentPanel()).save();
+		if (WriteQueue.shutdown(500)) {
+			closeData();
+		} else {
+			//Closing the files under a write which is still running would corrupt them,
+			//so they are left for the write to finish with as the application exits
+			Data.printErrorMessage(new TimeoutException("data was not closed since a write is still running"));
+		}
+	}
+	
+	/**
+	 * Closes every index and the idea store, so their files may be deleted.
+	 * They are reopened by {@link #loadData()}.
+	 */
+	private static void closeData() {
+		DateIndex.close();
+		BodyIndex.close();
+		TagIndex.close();
+		NameIndex.close();
+		IdeaStore.close();
 	}
 	
 	/**
 	 * Calls methods to load general data used by the application.
 	 * 
 	 * @see ca.josephroque.idea.config.Category#loadCategoryNames()
+	 * @see ca.josephroque.idea.config.IdeaStore#open()
+	 * @see ca.josephroque.idea.config.NameIndex#load()
+	 * @see ca.josephroque.idea.config.TagIndex#load()
+	 * @see ca.josephroque.idea.config.BodyIndex#load()
+	 * @see ca.josephroque.idea.config.DateIndex#load()
 	 */
 	public static void loadData() {
 		Category.loadCategoryNames();
+		try {
+			IdeaStore.open();
+			NameIndex.load();
+			TagIndex.load();
+			BodyIndex.load();
+			DateIndex.load();
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+			Notification.queueErrorNotification("Error loading some files. Consider 'recovery' if data is missing");
+		}
 	}
 	
 	/**
@@ -74,57 +111,27 @@ public class Data {
 				return;
 			}
 			
+			PanelManager.show(PanelManager.MENU_SUBMIT);
+			final SubmitPanel submitPanel = (SubmitPanel) PanelManager.getPanel(PanelManager.MENU_SUBMIT);
+			
 			try {
-				SAXParserFactory factory = SAXParserFactory.newInstance();
-				SAXParser saxParser = factory.newSAXParser();
-				
-				PanelManager.show(PanelManager.MENU_SUBMIT);
-				final SubmitPanel submitPanel = (SubmitPanel) PanelManager.getPanel(PanelManager.MENU_SUBMIT);
-				
-				DefaultHandler handler = new DefaultHandler() {
-					boolean boolIdeaName = false;
-					boolean boolIdeaTags = false;
-					boolean boolIdeaBody = false;
-					StringBuilder builder = new StringBuilder();
-					
-					public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-						if (qName.equalsIgnoreCase("ideaname")) {
-							boolIdeaName = true;
-							builder = new StringBuilder();
-						} else if (qName.equalsIgnoreCase("ideatag")) {
-							boolIdeaTags = true;
-							builder = new StringBuilder();
-						} else if (qName.equalsIgnoreCase("ideabody")) {
-							boolIdeaBody = true;
-							builder = new StringBuilder();
-						}
-					}
-					
-					public void endElement(String uri, String localName, String qName) throws SAXException {
-						if (qName.equalsIgnoreCase("ideaname")) {
-							boolIdeaName = false;
-							if (builder.length() > 0)
-								submitPanel.setIdeaName(builder.toString());
-						} else if (qName.equalsIgnoreCase("ideatag")) {
-							boolIdeaTags = false;
-							if (builder.length() > 0)
-								submitPanel.setIdeaTags(builder.toString());
-						} else if (qName.equalsIgnoreCase("ideabody")) {
-							boolIdeaBody = false;
-							if (builder.length() > 0)
-								submitPanel.setIdeaBody(builder.toString());
+				XmlReader.read(submitPanelSaveFile, new XmlReader.Handler() {
+					public boolean element(String name, CharSequence text) {
+						if (text.length() == 0)
+							return true;
+						
+						if (name.equalsIgnoreCase("ideaname")) {
+							submitPanel.setIdeaName(text.toString());
+						} else if (name.equalsIgnoreCase("ideatag")) {
+							submitPanel.setIdeaTags(text.toString());
+						} else if (name.equalsIgnoreCase("ideabody")) {
+							submitPanel.setIdeaBody(text.toString());
 						}
+						return true;
 					}
-					
-					public void characters(char[] ch, int start, int length) throws SAXException {
-						if (boolIdeaName || boolIdeaTags || boolIdeaBody)
-							builder.append(new String(ch, start, length));
-					}
-				};
-				
-				saxParser.parse(submitPanelSaveFile, handler);
-			} catch (SAXException | ParserConfigurationException | IOException ex) {
-				Data.printErrorMessage(ex);
+				});
+			} catch (IOException io) {
+				Data.printErrorMessage(io);
 			}
 			
 			submitPanelSaveFile.delete();
@@ -135,18 +142,30 @@ public class Data {
 	 * Prompts the user twice delete all data relevant to the program. If the
 	 * user follows through, all files from the main directory are deleted
 	 * and the application exits. The next time the application is opened,
-	 * default data will be created.
+	 * default data will be created. If any file could not be deleted, the
+	 * remaining data is reloaded and the application keeps running. Nothing is
+	 * deleted while a save is still being written.
 	 */
 	public static void deleteAllData() {
 		int deleteConfirmation = JOptionPane.showConfirmDialog(Ideabook.getFrame(), "Are you sure you want to delete all data?" + LINE_SEPARATOR + "This cannot be undone!", "Delete ALL data?", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
 		if (deleteConfirmation == JOptionPane.OK_OPTION) {
 			deleteConfirmation = JOptionPane.showConfirmDialog(Ideabook.getFrame(), "Are you 100% sure you want to delete ALL data?" + LINE_SEPARATOR + "This cannot be undone!", "Delete ALL data?", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
 			if (deleteConfirmation == JOptionPane.OK_OPTION) {
+				//The queue keeps running, since saves are still possible if the data cannot be deleted
+				if (!WriteQueue.flush(1000)) {
+					JOptionPane.showMessageDialog(Ideabook.getFrame(), "Your data is still being saved." + LINE_SEPARATOR + "Please wait a moment and try again.", "Data not deleted", JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				closeData();
 				File mainDirectory = new File(getDefaultDirectory() + "/Ideabook");
 				if (deleteAllFiles(mainDirectory)) {
 					JOptionPane.showMessageDialog(Ideabook.getFrame(), "All data has been deleted." + LINE_SEPARATOR + "The program will now exit.", "Data successfully deleted", JOptionPane.INFORMATION_MESSAGE);
 					System.exit(0);
 				}
+				
+				IdeaCache.clear();
+				loadData();
+				JOptionPane.showMessageDialog(Ideabook.getFrame(), "Some data could not be deleted." + LINE_SEPARATOR + "Close any programs using it and try again.", "Data not deleted", JOptionPane.ERROR_MESSAGE);
 			}
 		}
 	}
@@ -201,32 +220,6 @@ public class Data {
 		//This is if something happens to a config file and these assets are no longer documented
 	}
 	
-	/**
-	 * If a file is specified by <code>file</code> then its filename is compared against
-	 * <code>fileName</code>. If they match, the method returns <code>true</code>. If
-	 * <code>file</code> specifies a directory, its subdirectories are checked for a duplicate
-	 * filename as well.
-	 * 
-	 * @param file the file or directory to compare
-	 * @param fileName the filename to compare
-	 * @return true if the file or any subfile/directory and filename are equal, false otherwise
-	 */
-	public static boolean checkForDuplicateFilename(File file, String fileName) {
-		if (file == null || !file.exists())
-			return false;
-		
-		if (file.isDirectory()) {
-			File[] listOfFiles = file.listFiles();
-			for (File f:listOfFiles) {
-				if (checkForDuplicateFilename(f, fileName))
-					return true;
-			}
-			return false;
-		} else {
-			return file.getName().equalsIgnoreCase(fileName);
-		}
-	}
-
 	/**
 	 * If <code>shouldPrintMessage</code>, outputs the stack trace
 	 * from the provided exception .
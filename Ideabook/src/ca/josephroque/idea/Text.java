@@ -18,6 +18,8 @@ public class Text {
 	public static final String regex_CommaSeparated = "[- a-zA-Z0-9!@#$%&.,+]*(, *[- a-zA-Z0-9!@#$%&.,+]*)*";
 	/** Regular expression matching an alphanumeric string with special characters */
 	public static final String regex_IdeaName = "[- a-zA-Z0-9!@#$%&.,+]*";
+	/** Regular expression matching search terms, which may include quoted phrases and fields such as <code>tag:x</code> */
+	public static final String regex_SearchTerms = "[- a-zA-Z0-9!@#$%&.,+\"':<>=]*";
 	/** Regular expression matching a lowercase string which is comma separated */
 	public static final String regex_CommaSeparatedAndLower = "[- a-z0-9!@#$%&.,+]*(, *[- a-z0-9!@#$%&.,+]*)*";
 	
@@ -0,0 +1,839 @@
+package ca.josephroque.idea.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import ca.josephroque.idea.Data;
+import ca.josephroque.idea.io.AtomicFile;
+import ca.josephroque.idea.io.SyncScheduler;
+import ca.josephroque.idea.search.Bm25;
+import ca.josephroque.idea.search.SearchCache;
+import ca.josephroque.idea.search.ShardedSearch;
+import ca.josephroque.idea.search.Tokenizer;
+
+/**
+ * Inverted index of the words in the body of every idea, used to search the
+ * text of ideas without loading them. Each term maps to the ids of the ideas
+ * containing it, assigned by {@link NameIndex}, along with the positions of
+ * the term in each idea so that phrases can be matched.
+ * <p>
+ * The index is kept in a single file laid out like {@link TagIndex}: a compact
+ * section holding every posting, followed by a journal with one entry for each
+ * idea which has been saved since. An entry replaces all of the postings of its
+ * idea, and once the journal grows larger than the compact section the file is
+ * rewritten. Positions are stored delta and variable-length encoded, both in
+ * the file and in memory.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class BodyIndex {
+
+	/** Identifies a file as a body index */
+	private static final int INDEX_MAGIC = 0x424F4459;
+	/** Version of the file layout */
+	private static final int INDEX_VERSION = 1;
+	/** Number of bytes in the header, which holds the magic and the version */
+	private static final int HEADER_LENGTH = 8;
+
+	/** Journal entry which replaces the postings of an idea */
+	private static final byte ENTRY_PUT = 1;
+	/** Journal entry which removes the postings of an idea */
+	private static final byte ENTRY_REMOVE = 2;
+
+	/** Minimum number of bytes in the journal before the file will be rewritten */
+	private static final long REWRITE_THRESHOLD = 1024 * 1024;
+	/** Minimum length of the last word of a query before it will match longer terms */
+	private static final int MIN_PREFIX_LENGTH = 3;
+
+	/** The postings of each term */
+	private static TreeMap<String, Term> terms = new TreeMap<String, Term>();
+	/** The distinct terms in the body of each idea which has been indexed, keyed by id */
+	private static HashMap<Integer, String[]> ideaTerms = new HashMap<Integer, String[]>();
+	/** The number of terms in the body of each idea which has been indexed, keyed by id */
+	private static HashMap<Integer, Integer> ideaLengths = new HashMap<Integer, Integer>();
+	/** Total number of terms in the bodies of every idea */
+	private static long totalLength = 0;
+	/** Channel used to append entries to the journal */
+	private static FileChannel channel = null;
+	/** Offset at which the journal begins */
+	private static long journalStart = 0;
+	/** Offset at which the next journal entry will be written */
+	private static long endOfIndex = 0;
+
+	/**
+	 * The ideas containing a term and the positions of the term in each of them.
+	 */
+	private static class Term {
+		/** The ids of the ideas, sorted in ascending order */
+		private int[] ids = new int[2];
+		/**
+		 * Offset of the positions of each idea in <code>positions</code>. The positions of
+		 * <code>ids[i]</code> end where those of <code>ids[i + 1]</code> begin
+		 */
+		private int[] offsets = new int[3];
+		/** The positions in each idea, as a count followed by deltas, variable-length encoded */
+		private byte[] positions = new byte[16];
+		/** The number of ideas containing the term */
+		private int size = 0;
+
+		/**
+		 * Returns the position of an id in <code>ids</code>.
+		 * @param id the id to look for
+		 * @return the index of the id, or <code>-(insertion point) - 1</code> if it is not present
+		 */
+		private int indexOf(int id) {
+			return Arrays.binarySearch(ids, 0, size, id);
+		}
+
+		/**
+		 * Sets the encoded positions of the term in an idea, adding the idea if it is not present.
+		 * @param id the id of the idea
+		 * @param encoded the encoded positions
+		 */
+		private void put(int id, byte[] encoded) {
+			int index = indexOf(id);
+			if (index >= 0)
+				removeAt(index);
+			index = -(indexOf(id) + 1);
+
+			if (size + 1 >= ids.length) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+				offsets = Arrays.copyOf(offsets, ids.length + 1);
+			}
+			int used = offsets[size];
+			if (used + encoded.length > positions.length)
+				positions = Arrays.copyOf(positions, Math.max(positions.length * 2, used + encoded.length));
+
+			int start = offsets[index];
+			System.arraycopy(positions, start, positions, start + encoded.length, used - start);
+			System.arraycopy(encoded, 0, positions, start, encoded.length);
+			System.arraycopy(ids, index, ids, index + 1, size - index);
+			ids[index] = id;
+			System.arraycopy(offsets, index + 1, offsets, index + 2, size - index);
+			for (int i = index + 2; i <= size + 1; i++)
+				offsets[i] += encoded.length;
+			offsets[index + 1] = start + encoded.length;
+			size++;
+		}
+
+		/**
+		 * Removes an idea and its positions.
+		 * @param index the index of the idea in <code>ids</code>
+		 */
+		private void removeAt(int index) {
+			int start = offsets[index];
+			int end = offsets[index + 1];
+			int length = end - start;
+			System.arraycopy(positions, end, positions, start, offsets[size] - end);
+			System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+			for (int i = index + 1; i < size; i++)
+				offsets[i] = offsets[i + 1] - length;
+			size--;
+		}
+
+		/**
+		 * Returns the number of times the term appears in an idea.
+		 * @param index the index of the idea in <code>ids</code>
+		 * @return the number of positions of the term in the idea
+		 */
+		private int getFrequency(int index) {
+			return readVarInt(positions, new int[] {offsets[index]});
+		}
+
+		/**
+		 * Decodes the positions of the term in an idea.
+		 * @param index the index of the idea in <code>ids</code>
+		 * @return the positions, in ascending order
+		 */
+		private int[] getPositions(int index) {
+			int[] cursor = {offsets[index]};
+			int[] decoded = new int[readVarInt(positions, cursor)];
+			int position = 0;
+			for (int i = 0; i < decoded.length; i++) {
+				position += readVarInt(positions, cursor);
+				decoded[i] = position;
+			}
+			return decoded;
+		}
+	}
+
+	/**
+	 * The terms of a single idea, encoded and ready to be written and applied.
+	 */
+	private static class Entry {
+		/** The id of the idea */
+		private final int ideaId;
+		/** The distinct terms in the idea */
+		private final String[] terms;
+		/** The encoded positions of each term */
+		private final byte[][] positions;
+
+		private Entry(int ideaId, String[] terms, byte[][] positions) {
+			this.ideaId = ideaId;
+			this.terms = terms;
+			this.positions = positions;
+		}
+	}
+
+	/**
+	 * Returns the file which the index is saved to.
+	 * @return the location of the index
+	 */
+	private static File getIndexFile() {
+		return new File(Data.getDefaultDirectory() + "/Ideabook/config/body.idx");
+	}
+
+	/**
+	 * Returns the file whose presence marks the index as stale.
+	 * @return the location of the marker
+	 */
+	private static File getStaleFile() {
+		return new File(getIndexFile().getPath() + ".stale");
+	}
+
+	/**
+	 * Loads the index with a single read of its file, then indexes the body of any
+	 * idea in {@link NameIndex} which is missing from it. The first time the index is
+	 * loaded, or if it was marked stale by {@link #markStale()}, this indexes every
+	 * idea. {@link NameIndex#load()} must be called first.
+	 *
+	 * @throws IOException if the index could not be read or written
+	 */
+	public static synchronized void load() throws IOException {
+		if (channel != null)
+			return;
+
+		terms = new TreeMap<String, Term>();
+		ideaTerms = new HashMap<Integer, String[]>();
+		ideaLengths = new HashMap<Integer, Integer>();
+		totalLength = 0;
+
+		File indexFile = getIndexFile();
+		channel = new RandomAccessFile(indexFile, "rw").getChannel();
+		File staleFile = getStaleFile();
+		boolean stale = staleFile.exists();
+		boolean rewriteNeeded = stale || channel.size() < HEADER_LENGTH;
+		if (!rewriteNeeded) {
+			endOfIndex = read();
+			if (endOfIndex < channel.size())
+				channel.truncate(endOfIndex);
+		}
+
+		for (int id = 0; id < NameIndex.getIdLimit(); id++) {
+			String name = NameIndex.getName(id);
+			if (name != null && !ideaTerms.containsKey(id)) {
+				apply(encode(id, Idea.loadIdea(name, NameIndex.getCategory(id)).getBody()));
+				rewriteNeeded = true;
+			}
+		}
+
+		if (rewriteNeeded)
+			rewrite();
+		else
+			rewriteIfNeeded();
+		if (stale)
+			staleFile.delete();
+	}
+
+	/**
+	 * Records that the index may no longer agree with {@link IdeaStore}, since a
+	 * change could not be written to it. The index is rebuilt from the store the
+	 * next time it is loaded.
+	 */
+	public static void markStale() {
+		try {
+			getStaleFile().createNewFile();
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+		}
+	}
+
+	/**
+	 * Closes the channel to the index. The index will be reloaded by the
+	 * next call to {@link #load()}.
+	 */
+	public static synchronized void close() {
+		if (channel == null)
+			return;
+
+		try {
+			channel.force(false);
+			channel.close();
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+		}
+		channel = null;
+	}
+
+	/**
+	 * Replaces the indexed body of an idea.
+	 *
+	 * @param ideaId the id of the idea
+	 * @param body the new body of the idea
+	 * @throws IOException if the journal could not be written
+	 */
+	public static void put(int ideaId, String body) throws IOException {
+		Entry entry = encode(ideaId, body);
+		byte[] bytes = encodeEntry(ENTRY_PUT, entry);
+
+		synchronized (BodyIndex.class) {
+			appendEntry(bytes);
+			apply(entry);
+			rewriteIfNeeded();
+		}
+	}
+
+	/**
+	 * Removes the indexed body of an idea once {@link NameIndex} has freed its id.
+	 * Does nothing if the idea is not indexed.
+	 *
+	 * @param ideaId the id of the idea
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void remove(int ideaId) throws IOException {
+		if (!ideaTerms.containsKey(ideaId))
+			return;
+
+		appendEntry(encodeEntry(ENTRY_REMOVE, new Entry(ideaId, new String[0], new byte[0][])));
+		SearchCache.invalidate();
+		removeIdea(ideaId);
+		rewriteIfNeeded();
+	}
+
+	/**
+	 * Appends an encoded journal entry to the end of the file.
+	 */
+	private static void appendEntry(byte[] bytes) throws IOException {
+		if (channel == null)
+			throw new IOException("body index is not loaded");
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining())
+			channel.write(buffer, endOfIndex + buffer.position());
+		SyncScheduler.sync(channel);
+		endOfIndex += bytes.length;
+	}
+
+	/**
+	 * Finds every idea whose body matches the query. Words in the query must all appear
+	 * in the body, in any order, while words in double quotes must appear together as a
+	 * phrase. If the query does not end with a space, its last word also matches longer
+	 * words which begin with it, so results can be shown as the user types.
+	 *
+	 * @param query the words and phrases to look for
+	 * @return the ids of the matching ideas, in ascending order
+	 */
+	public static int[] search(String query) {
+		List<String> words = new ArrayList<String>();
+		List<List<String>> phrases = new ArrayList<List<String>>();
+		String[] parts = query.split("\"", -1);
+		for (int i = 0; i < parts.length; i++) {
+			List<String> partTerms = Tokenizer.tokenize(parts[i]);
+			if (i % 2 == 1 && i < parts.length - 1) {
+				if (partTerms.size() > 1)
+					phrases.add(partTerms);
+				else if (partTerms.size() == 1 && partTerms.get(0) != null)
+					words.add(partTerms.get(0));
+			} else {
+				for (String term:partTerms) {
+					if (term != null)
+						words.add(term);
+				}
+			}
+		}
+
+		String prefix = null;
+		if (parts.length % 2 == 1 && Tokenizer.endsInTerm(query) && words.size() > 0
+				&& words.get(words.size() - 1).length() >= MIN_PREFIX_LENGTH)
+			prefix = words.remove(words.size() - 1);
+		if (words.isEmpty() && phrases.isEmpty() && prefix == null)
+			return new int[0];
+
+		synchronized (BodyIndex.class) {
+			int[] matches = null;
+			for (String word:words) {
+				matches = intersect(matches, terms.get(word));
+				if (matches.length == 0)
+					return matches;
+			}
+			for (List<String> phrase:phrases) {
+				for (String term:phrase) {
+					if (term != null)
+						matches = intersect(matches, terms.get(term));
+				}
+				matches = filterPhrase(matches, phrase);
+				if (matches.length == 0)
+					return matches;
+			}
+			if (prefix != null)
+				matches = intersectPrefix(matches, prefix);
+
+			int count = 0;
+			for (int i = 0; i < matches.length; i++) {
+				if (NameIndex.getName(matches[i]) != null)
+					matches[count++] = matches[i];
+			}
+			return Arrays.copyOf(matches, count);
+		}
+	}
+
+	/**
+	 * Returns a scorer which adds the relevance of the body of each idea to the
+	 * terms of a query, using {@link Bm25}. The postings of each term of the
+	 * query are copied while the lock on the index is held, so the scorer never
+	 * takes the lock and the shards of a search can be scored at once.
+	 *
+	 * @param queryTerms the distinct terms of the query, in lower case
+	 * @param boost the weight of the body relative to other fields
+	 * @return a scorer which adds to the score of each idea it is given
+	 */
+	public static synchronized ShardedSearch.Scorer getBodyScorer(List<String> queryTerms, final double boost) {
+		final int ideaCount = ideaTerms.size();
+		final double averageLength = (ideaCount == 0) ? 0:(double) totalLength / ideaCount;
+		final List<int[]> termIds = new ArrayList<int[]>();
+		final List<double[]> termScores = new ArrayList<double[]>();
+		for (String queryTerm:queryTerms) {
+			Term term = terms.get(queryTerm);
+			if (term == null)
+				continue;
+
+			int[] ids = Arrays.copyOf(term.ids, term.size);
+			double[] scores = new double[term.size];
+			for (int i = 0; i < term.size; i++)
+				scores[i] = boost * Bm25.score(term.getFrequency(i), ideaLengths.get(ids[i]),
+						averageLength, term.size, ideaCount, Bm25.B);
+			termIds.add(ids);
+			termScores.add(scores);
+		}
+
+		return new ShardedSearch.Scorer() {
+			public void score(int[] ideaIds, double[] scores) {
+				for (int t = 0; t < termIds.size(); t++) {
+					int[] ids = termIds.get(t);
+					double[] idScores = termScores.get(t);
+					for (int i = 0; i < ideaIds.length; i++) {
+						int index = Arrays.binarySearch(ids, ideaIds[i]);
+						if (index >= 0)
+							scores[i] += idScores[index];
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the ids in <code>matches</code> which also contain <code>term</code>. If
+	 * <code>matches</code> is null, every idea containing the term is returned.
+	 */
+	private static int[] intersect(int[] matches, Term term) {
+		if (term == null)
+			return new int[0];
+		if (matches == null)
+			return Arrays.copyOf(term.ids, term.size);
+
+		int count = 0;
+		int[] result = new int[Math.min(matches.length, term.size)];
+		for (int id:matches) {
+			if (term.indexOf(id) >= 0)
+				result[count++] = id;
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Returns the ids in <code>matches</code> which contain a term beginning with
+	 * <code>prefix</code>. If <code>matches</code> is null, every such idea is returned.
+	 */
+	private static int[] intersectPrefix(int[] matches, String prefix) {
+		BitSet ideas = new BitSet();
+		for (Term term:terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+			for (int i = 0; i < term.size; i++)
+				ideas.set(term.ids[i]);
+		}
+
+		int count = 0;
+		int[] result;
+		if (matches == null) {
+			result = new int[ideas.cardinality()];
+			for (int id = ideas.nextSetBit(0); id >= 0; id = ideas.nextSetBit(id + 1))
+				result[count++] = id;
+		} else {
+			result = new int[matches.length];
+			for (int id:matches) {
+				if (ideas.get(id))
+					result[count++] = id;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Returns the ids in <code>matches</code> whose bodies contain the terms of
+	 * <code>phrase</code> next to each other, in order. Terms which were too long
+	 * to be indexed are null, and match any term.
+	 */
+	private static int[] filterPhrase(int[] matches, List<String> phrase) {
+		int first = -1;
+		for (int i = 0; i < phrase.size() && first < 0; i++) {
+			if (phrase.get(i) != null)
+				first = i;
+		}
+		if (first < 0 || matches == null)
+			return (matches == null) ? new int[0]:matches;
+
+		int count = 0;
+		int[][] positions = new int[phrase.size()][];
+		ideas:
+		for (int id:matches) {
+			for (int i = 0; i < phrase.size(); i++) {
+				if (phrase.get(i) != null) {
+					Term term = terms.get(phrase.get(i));
+					positions[i] = term.getPositions(term.indexOf(id));
+				}
+			}
+
+			starts:
+			for (int position:positions[first]) {
+				int start = position - first;
+				for (int i = first + 1; i < phrase.size(); i++) {
+					if (phrase.get(i) != null && Arrays.binarySearch(positions[i], start + i) < 0)
+						continue starts;
+				}
+				matches[count++] = id;
+				continue ideas;
+			}
+		}
+		return Arrays.copyOf(matches, count);
+	}
+
+	/**
+	 * Splits the body of an idea into terms and encodes the positions of each.
+	 *
+	 * @param ideaId the id of the idea
+	 * @param body the body of the idea
+	 * @return the encoded terms of the idea
+	 */
+	private static Entry encode(int ideaId, String body) {
+		List<String> tokens = Tokenizer.tokenize(body);
+		LinkedHashMap<String, List<Integer>> termPositions = new LinkedHashMap<String, List<Integer>>();
+		for (int position = 0; position < tokens.size(); position++) {
+			String token = tokens.get(position);
+			if (token == null)
+				continue;
+			List<Integer> positions = termPositions.get(token);
+			if (positions == null) {
+				positions = new ArrayList<Integer>(2);
+				termPositions.put(token, positions);
+			}
+			positions.add(position);
+		}
+
+		String[] entryTerms = new String[termPositions.size()];
+		byte[][] entryPositions = new byte[termPositions.size()][];
+		int index = 0;
+		try {
+			for (Map.Entry<String, List<Integer>> term:termPositions.entrySet()) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(term.getValue().size() + 1);
+				DataOutputStream out = new DataOutputStream(bytes);
+				TagIndex.writeVarInt(out, term.getValue().size());
+				int previous = 0;
+				for (int position:term.getValue()) {
+					TagIndex.writeVarInt(out, position - previous);
+					previous = position;
+				}
+				out.flush();
+				entryTerms[index] = term.getKey();
+				entryPositions[index++] = bytes.toByteArray();
+			}
+		} catch (IOException io) {
+			//Not thrown when writing to a ByteArrayOutputStream
+			throw new IllegalStateException(io);
+		}
+		return new Entry(ideaId, entryTerms, entryPositions);
+	}
+
+	/**
+	 * Returns the bytes of a journal entry, prefixed by its length and followed by
+	 * a CRC32 checksum of everything between the two.
+	 */
+	private static byte[] encodeEntry(byte type, Entry entry) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeByte(type);
+		TagIndex.writeVarInt(out, entry.ideaId);
+		TagIndex.writeVarInt(out, entry.terms.length);
+		for (int i = 0; i < entry.terms.length; i++) {
+			out.writeUTF(entry.terms[i]);
+			TagIndex.writeVarInt(out, entry.positions[i].length);
+			out.write(entry.positions[i]);
+		}
+		out.writeInt(0);
+		out.flush();
+
+		byte[] encoded = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(encoded, 4, encoded.length - 8);
+		ByteBuffer.wrap(encoded).putInt(0, encoded.length - 4).putInt(encoded.length - 4, (int) crc.getValue());
+		return encoded;
+	}
+
+	/**
+	 * Replaces the postings of an idea in the in-memory index.
+	 */
+	private static void apply(Entry entry) {
+		SearchCache.invalidate();
+		removeIdea(entry.ideaId);
+
+		String[] entryTerms = new String[entry.terms.length];
+		int length = 0;
+		for (int i = 0; i < entry.terms.length; i++) {
+			Map.Entry<String, Term> existing = terms.ceilingEntry(entry.terms[i]);
+			Term term;
+			if (existing != null && existing.getKey().equals(entry.terms[i])) {
+				entryTerms[i] = existing.getKey();
+				term = existing.getValue();
+			} else {
+				entryTerms[i] = entry.terms[i];
+				term = new Term();
+				terms.put(entryTerms[i], term);
+			}
+			term.put(entry.ideaId, entry.positions[i]);
+			length += readVarInt(entry.positions[i], new int[1]);
+		}
+		ideaTerms.put(entry.ideaId, entryTerms);
+		ideaLengths.put(entry.ideaId, length);
+		totalLength += length;
+	}
+
+	/**
+	 * Removes every posting of an idea from the in-memory index.
+	 */
+	private static void removeIdea(int ideaId) {
+		String[] previousTerms = ideaTerms.remove(ideaId);
+		if (previousTerms == null)
+			return;
+		totalLength -= ideaLengths.remove(ideaId);
+
+		for (String termName:previousTerms) {
+			Term term = terms.get(termName);
+			int index = term.indexOf(ideaId);
+			if (index >= 0)
+				term.removeAt(index);
+			if (term.size == 0)
+				terms.remove(termName);
+		}
+	}
+
+	/**
+	 * Rewrites the file if the journal has grown larger than the compact section.
+	 */
+	private static void rewriteIfNeeded() throws IOException {
+		long journalLength = endOfIndex - journalStart;
+		if (journalLength > REWRITE_THRESHOLD && journalLength > journalStart)
+			rewrite();
+	}
+
+	/**
+	 * Reads the entire file and rebuilds the in-memory index from the compact
+	 * section and the journal.
+	 *
+	 * @return the offset after the last complete journal entry with a valid checksum
+	 */
+	private static long read() throws IOException {
+		ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+		while (contents.hasRemaining()) {
+			if (channel.read(contents, contents.position()) < 0)
+				throw new EOFException();
+		}
+		contents.flip();
+
+		ByteArrayInputStream compact = new ByteArrayInputStream(contents.array());
+		DataInputStream in = new DataInputStream(compact);
+		if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION)
+			throw new IOException("unrecognized body index " + getIndexFile());
+
+		HashMap<Integer, List<String>> compactIdeaTerms = new HashMap<Integer, List<String>>();
+		HashMap<Integer, Integer> compactIndex = new HashMap<Integer, Integer>();
+		int ideaCount = TagIndex.readVarInt(in);
+		int[] compactLengths = new int[ideaCount];
+		int id = 0;
+		for (int i = 0; i < ideaCount; i++) {
+			id += TagIndex.readVarInt(in);
+			compactIdeaTerms.put(id, new ArrayList<String>());
+			compactIndex.put(id, i);
+		}
+
+		int termCount = TagIndex.readVarInt(in);
+		for (int i = 0; i < termCount; i++) {
+			String termName = in.readUTF();
+			int count = TagIndex.readVarInt(in);
+			Term term = new Term();
+			term.ids = new int[count + 1];
+			term.offsets = new int[count + 2];
+			id = 0;
+			for (int j = 0; j < count; j++) {
+				id += TagIndex.readVarInt(in);
+				int length = TagIndex.readVarInt(in);
+				if (term.offsets[j] + length > term.positions.length)
+					term.positions = Arrays.copyOf(term.positions, Math.max(term.positions.length * 2, term.offsets[j] + length));
+				in.readFully(term.positions, term.offsets[j], length);
+				term.ids[j] = id;
+				term.offsets[j + 1] = term.offsets[j] + length;
+				compactIdeaTerms.get(id).add(termName);
+				compactLengths[compactIndex.get(id)] += term.getFrequency(j);
+			}
+			term.size = count;
+			terms.put(termName, term);
+		}
+		for (Map.Entry<Integer, List<String>> idea:compactIdeaTerms.entrySet()) {
+			ideaTerms.put(idea.getKey(), idea.getValue().toArray(new String[idea.getValue().size()]));
+			ideaLengths.put(idea.getKey(), compactLengths[compactIndex.get(idea.getKey())]);
+			totalLength += compactLengths[compactIndex.get(idea.getKey())];
+		}
+
+		//A torn or damaged entry ends the journal, along with anything after it
+		CRC32 crc = new CRC32();
+		journalStart = contents.capacity() - compact.available();
+		contents.position((int) journalStart);
+		while (contents.remaining() >= 4) {
+			int start = contents.position();
+			int length = contents.getInt();
+			if (length <= 4 || length > contents.remaining()) {
+				contents.position(start);
+				break;
+			}
+			crc.reset();
+			crc.update(contents.array(), contents.position(), length - 4);
+			if ((int) crc.getValue() != contents.getInt(contents.position() + length - 4)) {
+				contents.position(start);
+				break;
+			}
+
+			in = new DataInputStream(new ByteArrayInputStream(contents.array(), contents.position(), length - 4));
+			try {
+				byte type = in.readByte();
+				if (type != ENTRY_PUT && type != ENTRY_REMOVE)
+					throw new EOFException();
+				int ideaId = TagIndex.readVarInt(in);
+				String[] entryTerms = new String[TagIndex.readVarInt(in)];
+				byte[][] entryPositions = new byte[entryTerms.length][];
+				for (int i = 0; i < entryTerms.length; i++) {
+					entryTerms[i] = in.readUTF();
+					entryPositions[i] = new byte[TagIndex.readVarInt(in)];
+					in.readFully(entryPositions[i]);
+				}
+				if (type == ENTRY_PUT)
+					apply(new Entry(ideaId, entryTerms, entryPositions));
+				else
+					removeIdea(ideaId);
+			} catch (EOFException eof) {
+				contents.position(start);
+				break;
+			}
+			contents.position(contents.position() + length);
+		}
+
+		return contents.position();
+	}
+
+	/**
+	 * Writes the in-memory index to a new file as a compact section with an empty
+	 * journal, then replaces the old file with it. Ideas which no longer exist in
+	 * {@link NameIndex} are dropped.
+	 */
+	private static void rewrite() throws IOException {
+		List<Integer> removedIdeas = new ArrayList<Integer>();
+		for (Integer ideaId:ideaTerms.keySet()) {
+			if (NameIndex.getName(ideaId) == null)
+				removedIdeas.add(ideaId);
+		}
+		for (Integer ideaId:removedIdeas)
+			removeIdea(ideaId);
+
+		final long[] length = new long[1];
+		File indexFile = getIndexFile();
+		if (channel != null)
+			channel.close();
+		try {
+			AtomicFile.write(indexFile, new AtomicFile.Content() {
+				public void writeTo(OutputStream stream) throws IOException {
+					DataOutputStream out = new DataOutputStream(stream);
+					out.writeInt(INDEX_MAGIC);
+					out.writeInt(INDEX_VERSION);
+
+					int[] ideaIds = new int[ideaTerms.size()];
+					int count = 0;
+					for (Integer ideaId:ideaTerms.keySet())
+						ideaIds[count++] = ideaId;
+					Arrays.sort(ideaIds);
+					TagIndex.writeVarInt(out, ideaIds.length);
+					int previous = 0;
+					for (int ideaId:ideaIds) {
+						TagIndex.writeVarInt(out, ideaId - previous);
+						previous = ideaId;
+					}
+
+					TagIndex.writeVarInt(out, terms.size());
+					for (Map.Entry<String, Term> entry:terms.entrySet()) {
+						Term term = entry.getValue();
+						out.writeUTF(entry.getKey());
+						TagIndex.writeVarInt(out, term.size);
+						previous = 0;
+						for (int i = 0; i < term.size; i++) {
+							TagIndex.writeVarInt(out, term.ids[i] - previous);
+							previous = term.ids[i];
+							TagIndex.writeVarInt(out, term.offsets[i + 1] - term.offsets[i]);
+							out.write(term.positions, term.offsets[i], term.offsets[i + 1] - term.offsets[i]);
+						}
+					}
+					out.flush();
+					length[0] = out.size();
+				}
+			});
+			journalStart = length[0];
+			endOfIndex = length[0];
+		} finally {
+			channel = new RandomAccessFile(indexFile, "rw").getChannel();
+		}
+	}
+
+	/**
+	 * Reads an unsigned integer written by {@link TagIndex#writeVarInt(DataOutputStream, int)}
+	 * from an array.
+	 *
+	 * @param bytes the array to read from
+	 * @param cursor holds the offset to read from, which is advanced past the integer
+	 * @return the integer which was read
+	 */
+	private static int readVarInt(byte[] bytes, int[] cursor) {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = bytes[cursor[0]++] & 0xFF;
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
@@ -1,16 +1,20 @@
 package ca.josephroque.idea.config;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.TreeSet;
 
 import ca.josephroque.idea.Data;
 import ca.josephroque.idea.gui.Notification;
+import ca.josephroque.idea.io.AtomicFile;
+import ca.josephroque.idea.io.WriteQueue;
 
 /**
  * Static methods relevant to creating and loading categories
@@ -26,6 +30,8 @@ public class Category {
 	
 	/** Maximum length of a category name */
 	public static final int CATEGORY_MAX_LENGTH = 16;
+	/** Key of writes to the file of category names, so repeated writes are combined */
+	private static final String CATEGORY_NAMES_KEY = "categories.inf";
 	
 	/**
 	 * Loads existing categories from a file which lists their names. If the file
@@ -66,41 +72,41 @@ public class Category {
 		} else {
 			//Generates default categories and saves them
 			addCategoryName("Miscellaneous", false);
-			saveCategoryNames();
+			saveCategoryNames(getCategoryNamesArray());
 		}
 	}
 	
 	/**
-	 * Saves the current set of category names to a file so the application can
+	 * Saves a set of category names to a file so the application can
 	 * easily recognize and load them the next time it is run.
+	 * 
+	 * @param names the category names to save
+	 * @return true if the names were saved, false otherwise
 	 */
-	private static void saveCategoryNames() {
+	private static boolean saveCategoryNames(final String[] names) {
 		File directory = new File(Data.getDefaultDirectory() + "/Ideabook/config");
 		directory.mkdirs();
 		directory = null;
 		
 		File fileCategory = new File(Data.getDefaultDirectory() + "/Ideabook/config/categories.inf");
-		BufferedWriter writer = null;
 		
 		try {
-			writer = new BufferedWriter(new FileWriter(fileCategory));
-			
-			for (String line:categoryNames) {
-				writer.append(line);
-				writer.newLine();
-			}
+			AtomicFile.write(fileCategory, new AtomicFile.Content() {
+				public void writeTo(OutputStream out) throws IOException {
+					Writer writer = new OutputStreamWriter(out);
+					for (String line:names) {
+						writer.append(line);
+						writer.append(Data.LINE_SEPARATOR);
+					}
+					writer.flush();
+				}
+			});
 		} catch (IOException io) {
 			Data.printErrorMessage(io);
 			Notification.queueErrorNotification("Error loading some files. Consider 'recovery' if data is missing");
-		} finally {
-			try {
-				if (writer != null)
-					writer.close();
-			} catch (IOException | NullPointerException ex) {
-				Data.printErrorMessage(ex);
-				Notification.queueErrorNotification("Error loading some files. Consider 'recovery' if data is missing");
-			}
+			return false;
 		}
+		return true;
 	}
 	
 	/**
@@ -122,16 +128,29 @@ public class Category {
 		return categoryNames.iterator();
 	}
 	
+	/**
+	 * Returns the ids of the ideas in a category, as assigned by {@link NameIndex}.
+	 * The set is kept up to date as ideas are saved, so filtering a set of ideas
+	 * by category is a single <code>and</code> of two sets.
+	 * 
+	 * @param category the name of the category, or null for every category
+	 * @return a copy of the set of ids of the ideas in the category
+	 */
+	public static BitSet getIdeaIds(String category) {
+		return NameIndex.getIdeasInCategory(category);
+	}
+	
 	/**
 	 * If the category does not already exist, then it is added to <code>categoryNames</code>
 	 * and the method returns true, false otherwise. If <code>shouldSave</code> is true then
-	 * the current set of categories is saved to a text file.
+	 * the current set of categories is saved to a text file in the background.
 	 * 
 	 * @param newCategory name of the new category to be added
 	 * @param shouldSave indicates whether the new list of categories should be saved
 	 * @return true if the category did not already exist and was added, false otherwise
 	 * 
-	 * @see ca.josephroque.idea.config.Category#saveCategoryNames()
+	 * @see ca.josephroque.idea.config.Category#saveCategoryNames(String[])
+	 * @see ca.josephroque.idea.io.WriteQueue
 	 */
 	public static boolean addCategoryName(String newCategory, boolean shouldSave) {
 		Iterator<String> categoryIterator = categoryNames.iterator();
@@ -142,18 +161,15 @@ public class Category {
 			}
 		}
 		
-		File categoryFolder = new File(Data.getDefaultDirectory() + "/Ideabook/" + newCategory);
-		if (!categoryFolder.exists()) {
-			if (!categoryFolder.mkdirs()) {
-				Notification.queueErrorNotification("An unknown error occurred creating category. Try again");
-				return false;
-			}
-		}
-		
 		boolean success = categoryNames.add(newCategory);
 		
 		if (shouldSave && success) {
-			saveCategoryNames();
+			final String[] names = getCategoryNamesArray();
+			WriteQueue.submit(CATEGORY_NAMES_KEY, new WriteQueue.Task() {
+				protected boolean write() {
+					return saveCategoryNames(names);
+				}
+			});
 		}
 		
 		return success;
@@ -174,6 +190,20 @@ public class Category {
 		while (categoryIterator.hasNext()) {
 			comparator = categoryIterator.next();
 			if (comparator.equalsIgnoreCase(categoryToDelete)) {
+				try {
+					BitSet ideaIds = NameIndex.getIdeasInCategory(comparator);
+					IdeaStore.removeCategory(comparator);
+					IdeaCache.clear();
+					NameIndex.removeCategory(comparator);
+					TagIndex.removeIdeas(ideaIds);
+					for (int id = ideaIds.nextSetBit(0); id >= 0; id = ideaIds.nextSetBit(id + 1)) {
+						BodyIndex.remove(id);
+						DateIndex.remove(id);
+					}
+				} catch (IOException io) {
+					Data.printErrorMessage(io);
+					return false;
+				}
 				File file = new File(Data.getDefaultDirectory() + "/Ideabook/" + comparator);
 				return Data.deleteAllFiles(file);
 			}
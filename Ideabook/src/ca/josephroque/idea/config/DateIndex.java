@@ -0,0 +1,602 @@
+package ca.josephroque.idea.config;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+import ca.josephroque.idea.Data;
+import ca.josephroque.idea.io.AtomicFile;
+import ca.josephroque.idea.io.SyncScheduler;
+
+/**
+ * Index of the time each idea was created and last modified, so ideas can be
+ * found and ordered by date without loading them.
+ * <p>
+ * Each of the two dates is kept as a pair of parallel arrays sorted by time,
+ * one holding the times in milliseconds and the other the id of the idea
+ * each time belongs to, as assigned by {@link NameIndex}. Finding the ideas
+ * within a range of time is two binary searches, and the most recently
+ * modified ideas are the last entries of the array. While the index is loaded,
+ * only the dates of each id are kept, and the sorted arrays are built once every
+ * entry has been read.
+ * <p>
+ * The index is saved as a journal of fixed-length entries, each holding both
+ * dates of one idea or removing them, which is appended to whenever an idea is
+ * saved or deleted and rewritten once most of its entries have been replaced. Each entry is prefixed
+ * by its length and ends with a checksum, and the journal is cut off at the
+ * first entry which is incomplete or does not match it, such as one torn by a crash.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class DateIndex {
+
+	/** Identifies a file as a date index */
+	private static final int INDEX_MAGIC = 0x44415445;
+	/** Version of the journal layout */
+	private static final int INDEX_VERSION = 1;
+	/** Number of bytes in the header at the start of the journal */
+	private static final int HEADER_LENGTH = 8;
+	/** Number of bytes in each entry, which holds its length, its type, an id, two times and a checksum */
+	private static final int ENTRY_LENGTH = 29;
+
+	/** Journal entry which sets the dates of an idea */
+	private static final byte ENTRY_PUT = 1;
+	/** Journal entry which removes the dates of an idea */
+	private static final byte ENTRY_REMOVE = 2;
+
+	/** Number of journal entries which must be obsolete before the journal is rewritten */
+	private static final int REWRITE_THRESHOLD = 4096;
+
+	/** The time each idea was created, sorted */
+	private static SortedDates created = new SortedDates();
+	/** The time each idea was last modified, sorted */
+	private static SortedDates modified = new SortedDates();
+	/** The time each idea was created, indexed by id */
+	private static long[] createdById = new long[0];
+	/** The time each idea was last modified, indexed by id */
+	private static long[] modifiedById = new long[0];
+	/** The ids which have dates in the index */
+	private static BitSet indexedIds = new BitSet();
+	/** Channel used to append entries to the journal */
+	private static FileChannel channel = null;
+	/** Offset at which the next journal entry will be written */
+	private static long endOfJournal = 0;
+	/** Number of entries in the journal which have since been replaced */
+	private static int obsoleteEntries = 0;
+	/** Indicates whether the index is being loaded, during which the sorted dates are not kept up to date */
+	private static boolean loading = false;
+
+	/**
+	 * A list of times and the ids they belong to, sorted by time and then by id.
+	 */
+	static class SortedDates {
+		/** The times in the list, in ascending order */
+		private long[] times = new long[16];
+		/** The id each time belongs to */
+		private int[] ids = new int[16];
+		/** The number of times in the list */
+		private int size = 0;
+
+		/**
+		 * Adds a time to the list.
+		 * @param time the time, in milliseconds
+		 * @param id the id of the idea the time belongs to
+		 */
+		void add(long time, int id) {
+			int position = -(indexOf(time, id) + 1);
+			if (position < 0)
+				return;
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			System.arraycopy(times, position, times, position + 1, size - position);
+			System.arraycopy(ids, position, ids, position + 1, size - position);
+			times[position] = time;
+			ids[position] = id;
+			size++;
+		}
+
+		/**
+		 * Adds a time to the end of the list, without keeping the list sorted.
+		 * {@link #sort()} must be called once every time has been appended.
+		 * @param time the time, in milliseconds
+		 * @param id the id of the idea the time belongs to
+		 */
+		void append(long time, int id) {
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			times[size] = time;
+			ids[size] = id;
+			size++;
+		}
+
+		/**
+		 * Sorts the list by time and then by id with a merge sort of the two arrays,
+		 * once times have been appended.
+		 */
+		void sort() {
+			long[] sortedTimes = new long[times.length];
+			int[] sortedIds = new int[ids.length];
+			for (int width = 1; width < size; width *= 2) {
+				for (int low = 0; low < size; low += 2 * width) {
+					int middle = Math.min(low + width, size);
+					int high = Math.min(low + 2 * width, size);
+					int left = low;
+					int right = middle;
+					for (int i = low; i < high; i++) {
+						if (right == high || (left < middle && (times[left] < times[right]
+								|| (times[left] == times[right] && ids[left] <= ids[right])))) {
+							sortedTimes[i] = times[left];
+							sortedIds[i] = ids[left++];
+						} else {
+							sortedTimes[i] = times[right];
+							sortedIds[i] = ids[right++];
+						}
+					}
+				}
+
+				long[] swapTimes = times;
+				times = sortedTimes;
+				sortedTimes = swapTimes;
+				int[] swapIds = ids;
+				ids = sortedIds;
+				sortedIds = swapIds;
+			}
+		}
+
+		/**
+		 * Removes a time from the list.
+		 * @param time the time, in milliseconds
+		 * @param id the id of the idea the time belongs to
+		 */
+		void remove(long time, int id) {
+			int position = indexOf(time, id);
+			if (position < 0)
+				return;
+			System.arraycopy(times, position + 1, times, position, size - position - 1);
+			System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+			size--;
+		}
+
+		/**
+		 * Returns the position of the first time which is not before the given time.
+		 * @param time the time, in milliseconds
+		 * @return the position of the first time at or after <code>time</code>, or <code>size</code>
+		 */
+		int lowerBound(long time) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (times[middle] < time)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			return low;
+		}
+
+		/**
+		 * Returns the ids of the times in a range.
+		 * @param from the start of the range, inclusive
+		 * @param to the end of the range, exclusive
+		 * @return the ids of the ideas with a time in the range
+		 */
+		BitSet findBetween(long from, long to) {
+			BitSet matches = new BitSet();
+			for (int i = lowerBound(from), end = lowerBound(to); i < end; i++)
+				matches.set(ids[i]);
+			return matches;
+		}
+
+		/**
+		 * Returns the position of a time and id, as given by <code>Arrays.binarySearch</code>.
+		 */
+		private int indexOf(long time, int id) {
+			int position = lowerBound(time);
+			while (position < size && times[position] == time && ids[position] < id)
+				position++;
+			if (position < size && times[position] == time && ids[position] == id)
+				return position;
+			return -(position + 1);
+		}
+	}
+
+	/**
+	 * Returns the file which the journal is saved to.
+	 * @return the location of the journal
+	 */
+	private static File getIndexFile() {
+		return new File(Data.getDefaultDirectory() + "/Ideabook/config/dates.idx");
+	}
+
+	/**
+	 * Returns the file whose presence marks the index as stale.
+	 * @return the location of the marker
+	 */
+	private static File getStaleFile() {
+		return new File(getIndexFile().getPath() + ".stale");
+	}
+
+	/**
+	 * Loads the index from its journal, then reads the dates of any idea in
+	 * {@link NameIndex} which is missing from it. The first time the index is
+	 * loaded, or if it was marked stale by {@link #markStale()}, this reads the
+	 * dates of every idea. Ideas which no longer exist are dropped. {@link NameIndex#load()} must be called first.
+	 *
+	 * @throws IOException if the journal could not be read or written
+	 */
+	public static synchronized void load() throws IOException {
+		if (channel != null)
+			return;
+
+		created = new SortedDates();
+		modified = new SortedDates();
+		createdById = new long[0];
+		modifiedById = new long[0];
+		indexedIds = new BitSet();
+		obsoleteEntries = 0;
+
+		File indexFile = getIndexFile();
+		channel = new RandomAccessFile(indexFile, "rw").getChannel();
+		File staleFile = getStaleFile();
+		boolean stale = staleFile.exists();
+		if (stale)
+			channel.truncate(0);
+		loading = true;
+		try {
+			endOfJournal = readJournal();
+			if (endOfJournal < channel.size())
+				channel.truncate(endOfJournal);
+
+			for (int id = indexedIds.nextSetBit(0); id >= 0; id = indexedIds.nextSetBit(id + 1)) {
+				if (NameIndex.getName(id) == null) {
+					removeDates(id);
+					obsoleteEntries++;
+				}
+			}
+			for (int id = 0; id < NameIndex.getIdLimit(); id++) {
+				String name = NameIndex.getName(id);
+				if (name != null && !indexedIds.get(id)) {
+					Idea summary = Idea.loadIdeaSummary(name, NameIndex.getCategory(id));
+					if (summary.getDateCreated() != null && summary.getDateLastModified() != null)
+						writeEntry(ENTRY_PUT, id, summary.getDateCreated().getTime(), summary.getDateLastModified().getTime());
+				}
+			}
+		} finally {
+			loading = false;
+			sortDates();
+		}
+
+		if (obsoleteEntries > REWRITE_THRESHOLD && obsoleteEntries > indexedIds.cardinality())
+			rewriteJournal();
+		if (stale)
+			staleFile.delete();
+	}
+
+	/**
+	 * Records that the index may no longer agree with {@link IdeaStore}, since a
+	 * change could not be written to it. The index is rebuilt from the store the
+	 * next time it is loaded.
+	 */
+	public static void markStale() {
+		try {
+			getStaleFile().createNewFile();
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+		}
+	}
+
+	/**
+	 * Closes the channel to the journal. The index will be reloaded by the
+	 * next call to {@link #load()}.
+	 */
+	public static synchronized void close() {
+		if (channel == null)
+			return;
+
+		try {
+			channel.force(false);
+			channel.close();
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+		}
+		channel = null;
+	}
+
+	/**
+	 * Replaces the dates of an idea. Does nothing if either date is null.
+	 *
+	 * @param ideaId the id of the idea
+	 * @param dateCreated the time the idea was created
+	 * @param dateModified the time the idea was last modified
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void put(int ideaId, Date dateCreated, Date dateModified) throws IOException {
+		if (dateCreated == null || dateModified == null)
+			return;
+		if (indexedIds.get(ideaId) && createdById[ideaId] == dateCreated.getTime()
+				&& modifiedById[ideaId] == dateModified.getTime())
+			return;
+
+		writeEntry(ENTRY_PUT, ideaId, dateCreated.getTime(), dateModified.getTime());
+		if (obsoleteEntries > REWRITE_THRESHOLD && obsoleteEntries > indexedIds.cardinality())
+			rewriteJournal();
+	}
+
+	/**
+	 * Removes the dates of an idea once {@link NameIndex} has freed its id, so
+	 * the idea is no longer counted within any range of time. Does nothing if the
+	 * idea is not indexed.
+	 *
+	 * @param ideaId the id of the idea
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void remove(int ideaId) throws IOException {
+		if (!indexedIds.get(ideaId))
+			return;
+
+		writeEntry(ENTRY_REMOVE, ideaId, 0, 0);
+		if (obsoleteEntries > REWRITE_THRESHOLD && obsoleteEntries > indexedIds.cardinality())
+			rewriteJournal();
+	}
+
+	/**
+	 * Returns the time an idea was last modified.
+	 *
+	 * @param ideaId the id of the idea
+	 * @return the time in milliseconds, or <code>Long.MIN_VALUE</code> if the idea is not indexed
+	 */
+	public static synchronized long getDateModified(int ideaId) {
+		return indexedIds.get(ideaId) ? modifiedById[ideaId]:Long.MIN_VALUE;
+	}
+
+	/**
+	 * Finds the ideas created within a range of time.
+	 *
+	 * @param from the start of the range in milliseconds, inclusive
+	 * @param to the end of the range in milliseconds, exclusive
+	 * @return the ids of the matching ideas
+	 */
+	public static BitSet findCreatedBetween(long from, long to) {
+		BitSet matches;
+		synchronized (DateIndex.class) {
+			matches = created.findBetween(from, to);
+		}
+		matches.and(NameIndex.getIdeasInCategory(null));
+		return matches;
+	}
+
+	/**
+	 * Finds the ideas last modified within a range of time.
+	 *
+	 * @param from the start of the range in milliseconds, inclusive
+	 * @param to the end of the range in milliseconds, exclusive
+	 * @return the ids of the matching ideas
+	 */
+	public static BitSet findModifiedBetween(long from, long to) {
+		BitSet matches;
+		synchronized (DateIndex.class) {
+			matches = modified.findBetween(from, to);
+		}
+		matches.and(NameIndex.getIdeasInCategory(null));
+		return matches;
+	}
+
+	/**
+	 * Returns the number of ideas created within a range of time. Since the
+	 * dates of an idea are removed when its id is freed, this is the number of
+	 * ideas {@link #findCreatedBetween(long, long)} returns.
+	 *
+	 * @param from the start of the range in milliseconds, inclusive
+	 * @param to the end of the range in milliseconds, exclusive
+	 * @return the number of matching ideas
+	 */
+	public static synchronized int countCreatedBetween(long from, long to) {
+		return created.lowerBound(to) - created.lowerBound(from);
+	}
+
+	/**
+	 * Returns the number of ideas last modified within a range of time. Since the
+	 * dates of an idea are removed when its id is freed, this is the number of
+	 * ideas {@link #findModifiedBetween(long, long)} returns.
+	 *
+	 * @param from the start of the range in milliseconds, inclusive
+	 * @param to the end of the range in milliseconds, exclusive
+	 * @return the number of matching ideas
+	 */
+	public static synchronized int countModifiedBetween(long from, long to) {
+		return modified.lowerBound(to) - modified.lowerBound(from);
+	}
+
+	/**
+	 * Returns the most recently modified of the given ideas, newest first. The
+	 * dates are walked from the newest, so only as many are looked at as it
+	 * takes to find <code>count</code> ideas.
+	 *
+	 * @param ideaIds the ids of the ideas to choose from
+	 * @param count the number of ideas to return
+	 * @return the ids of at most <code>count</code> ideas, from most to least recently modified
+	 */
+	public static synchronized int[] getMostRecentlyModified(BitSet ideaIds, int count) {
+		int[] recent = new int[Math.min(count, ideaIds.cardinality())];
+		int found = 0;
+		for (int i = modified.size - 1; i >= 0 && found < recent.length; i--) {
+			if (ideaIds.get(modified.ids[i]))
+				recent[found++] = modified.ids[i];
+		}
+		return (found == recent.length) ? recent:Arrays.copyOf(recent, found);
+	}
+
+	/**
+	 * Rebuilds <code>created</code> and <code>modified</code> from the dates of each
+	 * indexed idea, sorting each once rather than inserting each date in order.
+	 */
+	private static void sortDates() {
+		created = new SortedDates();
+		modified = new SortedDates();
+		for (int id = indexedIds.nextSetBit(0); id >= 0; id = indexedIds.nextSetBit(id + 1)) {
+			created.append(createdById[id], id);
+			modified.append(modifiedById[id], id);
+		}
+		created.sort();
+		modified.sort();
+	}
+
+	/**
+	 * Removes the dates of an idea from the in-memory index.
+	 */
+	private static void removeDates(int id) {
+		if (!indexedIds.get(id))
+			return;
+		if (!loading) {
+			created.remove(createdById[id], id);
+			modified.remove(modifiedById[id], id);
+		}
+		indexedIds.clear(id);
+	}
+
+	/**
+	 * Applies an entry to the in-memory index.
+	 */
+	private static void apply(int id, long timeCreated, long timeModified) {
+		if (indexedIds.get(id)) {
+			removeDates(id);
+			obsoleteEntries++;
+		}
+		if (id >= createdById.length) {
+			int length = Math.max(id + 1, createdById.length * 2);
+			createdById = Arrays.copyOf(createdById, length);
+			modifiedById = Arrays.copyOf(modifiedById, length);
+		}
+
+		createdById[id] = timeCreated;
+		modifiedById[id] = timeModified;
+		if (!loading) {
+			created.add(timeCreated, id);
+			modified.add(timeModified, id);
+		}
+		indexedIds.set(id);
+	}
+
+	/**
+	 * Applies a journal entry to the in-memory index, either replacing or removing the dates of an idea.
+	 */
+	private static void applyEntry(byte type, int id, long timeCreated, long timeModified) {
+		if (type == ENTRY_PUT) {
+			apply(id, timeCreated, timeModified);
+		} else {
+			if (indexedIds.get(id)) {
+				removeDates(id);
+				obsoleteEntries++;
+			}
+			obsoleteEntries++;
+		}
+	}
+
+	/**
+	 * Appends an entry to the journal and applies it to the in-memory index.
+	 */
+	private static void writeEntry(byte type, int id, long timeCreated, long timeModified) throws IOException {
+		if (channel == null)
+			throw new IOException("date index is not loaded");
+
+		ByteBuffer entry = ByteBuffer.allocate(ENTRY_LENGTH);
+		encodeEntry(entry, type, id, timeCreated, timeModified);
+		entry.flip();
+		while (entry.hasRemaining())
+			channel.write(entry, endOfJournal + entry.position());
+		SyncScheduler.sync(channel);
+		endOfJournal += ENTRY_LENGTH;
+		applyEntry(type, id, timeCreated, timeModified);
+	}
+
+	/**
+	 * Writes a journal entry to a buffer, prefixed by its length and followed by
+	 * a CRC32 checksum of everything between the two.
+	 */
+	private static void encodeEntry(ByteBuffer buffer, byte type, int id, long timeCreated, long timeModified) {
+		int start = buffer.position();
+		buffer.putInt(ENTRY_LENGTH - 4).put(type).putInt(id).putLong(timeCreated).putLong(timeModified);
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), start + 4, ENTRY_LENGTH - 8);
+		buffer.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * Reads the journal from the start and applies each entry to the index. If the
+	 * journal is empty, its header is written.
+	 *
+	 * @return the offset after the last complete entry with a valid checksum
+	 */
+	private static long readJournal() throws IOException {
+		long size = channel.size();
+		if (size < HEADER_LENGTH) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			header.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).flip();
+			channel.truncate(0);
+			channel.write(header, 0);
+			return HEADER_LENGTH;
+		}
+
+		ByteBuffer contents = ByteBuffer.allocate((int) size);
+		while (contents.hasRemaining()) {
+			if (channel.read(contents, contents.position()) < 0)
+				throw new EOFException();
+		}
+		contents.flip();
+		if (contents.getInt() != INDEX_MAGIC || contents.getInt() != INDEX_VERSION)
+			throw new IOException("unrecognized date index " + getIndexFile());
+
+		//A torn or damaged entry ends the journal, along with anything after it
+		CRC32 crc = new CRC32();
+		while (contents.remaining() >= ENTRY_LENGTH) {
+			int start = contents.position();
+			crc.reset();
+			crc.update(contents.array(), start + 4, ENTRY_LENGTH - 8);
+			if (contents.getInt(start) != ENTRY_LENGTH - 4 || (int) crc.getValue() != contents.getInt(start + ENTRY_LENGTH - 4))
+				break;
+
+			byte type = contents.get(start + 4);
+			int id = contents.getInt(start + 5);
+			if ((type != ENTRY_PUT && type != ENTRY_REMOVE) || id < 0)
+				break;
+			applyEntry(type, id, contents.getLong(start + 9), contents.getLong(start + 17));
+			contents.position(start + ENTRY_LENGTH);
+		}
+		return contents.position();
+	}
+
+	/**
+	 * Replaces the journal with one which only contains an entry for each indexed idea.
+	 * The new journal is written beside the old one and renamed over it, so a crash
+	 * leaves one or the other.
+	 */
+	private static void rewriteJournal() throws IOException {
+		ByteBuffer contents = ByteBuffer.allocate(HEADER_LENGTH + indexedIds.cardinality() * ENTRY_LENGTH);
+		contents.putInt(INDEX_MAGIC).putInt(INDEX_VERSION);
+		for (int id = indexedIds.nextSetBit(0); id >= 0; id = indexedIds.nextSetBit(id + 1))
+			encodeEntry(contents, ENTRY_PUT, id, createdById[id], modifiedById[id]);
+
+		File indexFile = getIndexFile();
+		channel.close();
+		try {
+			AtomicFile.write(indexFile, contents.array());
+			endOfJournal = contents.capacity();
+			obsoleteEntries = 0;
+		} finally {
+			channel = new RandomAccessFile(indexFile, "rw").getChannel();
+		}
+	}
+}
@@ -1,8 +1,11 @@
 package ca.josephroque.idea.config;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -13,20 +16,10 @@ import java.util.List;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
-
 import ca.josephroque.idea.Data;
 import ca.josephroque.idea.gui.Notification;
+import ca.josephroque.idea.io.XmlReader;
+import ca.josephroque.idea.io.XmlWriter;
 
 /**
  * An Idea object is made up of a name, a category, a list of tags, and a plain text
@@ -58,6 +51,8 @@ public class Idea {
 	
 	/** Indicates whether the idea has been modified since its initialization */
 	private boolean wasModified = false;
+	/** Indicates whether <code>body</code> has been read from the idea store */
+	private boolean bodyLoaded = true;
 	
 	/**
 	 * Initializes a new idea with the parameters as values for instance variables.
@@ -160,10 +155,16 @@ public class Idea {
 	 */
 	public String getCategory() {return category;}
 	/**
-	 * Returns the description of the idea.
+	 * Returns the description of the idea. If the idea was loaded by
+	 * {@link #loadIdeaSummary(String, String)}, the description is read
+	 * from the idea store the first time this method is called.
 	 * @return the value of <code>body</code>
 	 */
-	public String getBody() {return body;}
+	public String getBody() {
+		if (!bodyLoaded)
+			loadBody();
+		return body;
+	}
 	/**
 	 * Returns the list containing the tags of the idea.
 	 * @return the value of <code>tags</code>
@@ -185,10 +186,10 @@ public class Idea {
 	
 	/**
 	 * Returns a String array of <code>tags</code>
-	 * @return tags.toArray()
+	 * @return a copy of <code>tags</code> as an array
 	 */
 	public String[] getTagsArray() {
-		return (String[]) tags.toArray();
+		return tags.toArray(new String[tags.size()]);
 	}
 	
 	/**
@@ -242,6 +243,7 @@ public class Idea {
 	 */
 	public void setBody(String body) {
 		this.body = body;
+		this.bodyLoaded = true;
 		modified();
 	}
 	
@@ -290,209 +292,312 @@ public class Idea {
 	}
 	
 	/**
-	 * Edits an idea by deleting the old data which stored it and saving
-	 * the new idea to its own file. Returns false if the name of the new
-	 * idea is taken or if the file is unsuccessfully saved, true otherwise.
+	 * Edits an idea by replacing the old data which stored it with the
+	 * new idea. Returns false if the name of the new idea is taken or if
+	 * the idea is unsuccessfully saved, true otherwise. If the idea is saved
+	 * but its body or dates cannot be indexed, those indexes are rebuilt the
+	 * next time they are loaded.
 	 * 
-	 * @param oldIdea the original idea to be deleted
+	 * @param oldIdea the original idea to be replaced
 	 * @param newIdea the new idea to be saved
 	 * @return true if the new idea is successfully saved, false otherwise
 	 */
 	public static boolean editIdea(Idea oldIdea, Idea newIdea) {
-		File directory = new File(Data.getDefaultDirectory() + "/Ideabook/" + newIdea.getCategory());
-		directory.mkdirs();
-		
-		directory = new File(Data.getDefaultDirectory() + "/Ideabook/");
-		if (oldIdea.getName().equalsIgnoreCase(newIdea.getName())) {
-			File oldSaveFile = new File(Data.getDefaultDirectory() + "/Ideabook/" + oldIdea.getCategory() + "/" + oldIdea.getName() + ".idea");
-			oldSaveFile.delete();
-		} else if (Data.checkForDuplicateFilename(directory, newIdea.getName() + ".idea")) {
+		boolean renamed = !oldIdea.getName().equalsIgnoreCase(newIdea.getName());
+		if (renamed && NameIndex.contains(newIdea.getName())) {
 			Notification.queueInformationNotification("An idea with this name already exists");
 			return false;
 		}
-		directory = null;
 		
-		File saveFile = new File(Data.getDefaultDirectory() + "/Ideabook/" + newIdea.getCategory() + "/" + newIdea.getName() + ".idea");
-		return saveIdeaToFile(newIdea, saveFile);
+		if (!saveIdeaToStore(newIdea))
+			return false;
+		
+		//Saving again repeats each step, so the idea is only reported saved once its name is indexed
+		int ideaId;
+		try {
+			ideaId = NameIndex.update(oldIdea.getName(), newIdea.getName(), newIdea.getCategory());
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+			Notification.queueErrorNotification("This idea could not be saved");
+			return false;
+		}
+		
+		try {
+			BodyIndex.put(ideaId, newIdea.getBody());
+			DateIndex.put(ideaId, newIdea.getDateCreated(), newIdea.getDateLastModified());
+			if (renamed) {
+				IdeaStore.remove(oldIdea.getName());
+				IdeaCache.invalidate(oldIdea.getName());
+			}
+		} catch (IOException io) {
+			indexingFailed(io);
+		}
+		return true;
 	}
 	
 	/**
-	 * Saves an idea to a file. Returns false if the name of the idea
+	 * Saves an idea to the idea store. Returns false if the name of the idea
 	 * is already take or if the idea was not successfully saved, true
-	 * otherwise.
+	 * otherwise. If the idea is saved but its body or dates cannot be indexed,
+	 * those indexes are rebuilt the next time they are loaded.
 	 * 
 	 * @param idea the idea to be saved
 	 * @return true if the idea was successfully saved, false otherwise
+	 * @see ca.josephroque.idea.config.NameIndex#contains(String)
 	 */
 	public static boolean saveIdea(Idea idea) {
-		File directory = new File(Data.getDefaultDirectory() + "/Ideabook/" + idea.getCategory());
-		directory.mkdirs();
-		
-		directory = new File(Data.getDefaultDirectory() + "/Ideabook/");
-		if (Data.checkForDuplicateFilename(directory, idea.getName() + ".idea")) {
+		if (NameIndex.contains(idea.getName())) {
 			Notification.queueInformationNotification("An idea with this name already exists");
 			return false;
 		}
-		directory = null;
 		
-		File saveFile = new File(Data.getDefaultDirectory() + "/Ideabook/" + idea.getCategory() + "/" + idea.getName() + ".idea");
-		return saveIdeaToFile(idea, saveFile);
+		if (!saveIdeaToStore(idea))
+			return false;
+		
+		int ideaId;
+		try {
+			ideaId = NameIndex.add(idea.getName(), idea.getCategory());
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+			Notification.queueErrorNotification("This idea could not be saved");
+			return false;
+		}
+		
+		try {
+			BodyIndex.put(ideaId, idea.getBody());
+			DateIndex.put(ideaId, idea.getDateCreated(), idea.getDateLastModified());
+		} catch (IOException io) {
+			indexingFailed(io);
+		}
+		return true;
 	}
 	
 	/**
-	 * Saves the given idea to the given file, formatted as an XML document.
+	 * Marks the body and date indexes to be rebuilt from the idea store when they
+	 * are next loaded, after an idea was saved but could not be added to them.
+	 * 
+	 * @param io the error which stopped the idea from being indexed
+	 */
+	private static void indexingFailed(IOException io) {
+		Data.printErrorMessage(io);
+		BodyIndex.markStale();
+		DateIndex.markStale();
+		Notification.queueErrorNotification("This idea was saved, but searches may not find it until Ideabook is restarted");
+	}
+	
+	/**
+	 * Appends the given idea to the idea store, formatted as an XML document, and
+	 * replaces any copy of it in {@link IdeaCache}.
 	 * 
 	 * @param idea the idea to be saved
-	 * @param saveFile the file to save the idea to
 	 * @return true if the idea was successfully saved, false otherwise
+	 * @see ca.josephroque.idea.config.IdeaStore#put(String, String, byte[])
 	 */
-	private static boolean saveIdeaToFile(Idea idea, File saveFile) {
-		if (saveFile.exists()) {
-			saveFile.delete();
-		}
-		
-		Element ideaElement = new Element("idea");
-		Document doc = new Document(ideaElement);
-		
-		Element content = new Element("content");
-		content.addContent(new Element("name").setText(idea.getName()));
-		content.addContent(new Element("category").setText(idea.getCategory()));
-		content.addContent(new Element("tags").setText(idea.getTagsCommaSeparated()));
-		content.addContent(new Element("body").setText(idea.getBody()));
-		content.addContent(new Element("created").setText(idea.getDateCreatedFormatted()));
-		content.addContent(new Element("modified").setText(idea.getDateLastModifiedFormatted()));
-		
-		doc.getRootElement().addContent(content);
-		
-		XMLOutputter xmlOutput = new XMLOutputter();
-		xmlOutput.setFormat(Format.getPrettyFormat());
-		
+	private static boolean saveIdeaToStore(Idea idea) {
 		try {
-			xmlOutput.output(doc, new FileWriter(saveFile));
+			IdeaStore.put(idea.getName(), idea.getCategory(), encode(idea));
 		} catch (IOException io) {
+			IdeaCache.invalidate(idea.getName());
 			Data.printErrorMessage(io);
 			Notification.queueErrorNotification("An unexpected error occurred and this idea was not saved");
 			return false;
 		}
 		
+		IdeaCache.put(idea);
 		return true;
 	}
 	
+	/**
+	 * Formats the given idea as an XML document and returns its bytes. The body
+	 * is written last, so the rest of the idea can be read without reading it.
+	 * 
+	 * @param idea the idea to be formatted
+	 * @return the XML document of the idea, encoded as UTF-8
+	 */
+	static byte[] encode(Idea idea) {
+		return XmlWriter.begin(false)
+				.startElement("idea")
+				.startElement("content")
+				.element("name", idea.getName())
+				.element("category", idea.getCategory())
+				.element("tags", idea.getTagsCommaSeparated())
+				.element("created", idea.getDateCreatedFormatted())
+				.element("modified", idea.getDateLastModifiedFormatted())
+				.element("body", idea.getBody())
+				.toByteArray();
+	}
+	
 	/**
 	 * Using the provided name and category, loads the remaining data
-	 * from an XML file and creates a new <code>Idea</code> object
+	 * from the idea store and creates a new <code>Idea</code> object
 	 * and returns it.
 	 * 
 	 * @param name the name of the idea to load
 	 * @param category the category of the idea to load
-	 * @return a new Idea object with the data loaded from a file as its values
+	 * @return a new Idea object with the data loaded from the store as its values
 	 */
 	public static Idea loadIdea(String name, String category) {
+		Idea idea = new Idea(name, category, null, null, null);
+		try {
+			byte[] payload = IdeaStore.get(name);
+			if (payload != null)
+				decode(new ByteArrayInputStream(payload), idea);
+		} catch (IOException ex) {
+			Data.printErrorMessage(ex);
+		}
+		
+		return idea;
+	}
+	
+	/**
+	 * Using the provided name and category, loads the tags and dates of an
+	 * idea from the idea store, without reading its body. The body is read
+	 * the first time {@link #getBody()} is called on the returned idea, so
+	 * ideas which are only listed or counted never have their body loaded.
+	 * 
+	 * @param name the name of the idea to load
+	 * @param category the category of the idea to load
+	 * @return a new Idea object with the tags and dates loaded from the store as its values
+	 */
+	public static Idea loadIdeaSummary(String name, String category) {
 		final Idea idea = new Idea(name, category, null, null, null);
-		final StringBuilder dateHolder = new StringBuilder();
-		File loadFile = new File(Data.getDefaultDirectory() + "/Ideabook/" + category + "/" + name + ".idea");
-		if (loadFile.exists()) {
-			try {
-				SAXParserFactory factory = SAXParserFactory.newInstance();
-				SAXParser saxParser = factory.newSAXParser();
-				
-				DefaultHandler handler = new DefaultHandler() {
-					boolean boolTags, boolBody, boolCreated, boolModified;
-					StringBuilder builder;
-					
-					public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-						if (qName.equalsIgnoreCase("TAGS")) {
-							builder = new StringBuilder();
-							boolTags = true;
-						} else if (qName.equalsIgnoreCase("BODY")) {
-							builder = new StringBuilder();
-							boolBody = true;
-						} else if (qName.equalsIgnoreCase("CREATED")) {
-							builder = new StringBuilder();
-							boolCreated = true;
-						} else if (qName.equalsIgnoreCase("MODIFIED")) {
-							//builder = new StringBuilder();
-							boolModified = true;
-						}
-					}
-					
-					public void endElement(String uri, String localName, String qName) throws SAXException {
-						if (qName.equalsIgnoreCase("TAGS")) {
-							String tagsUnsplit = builder.toString();
-							idea.setTags(tagsUnsplit.split(", +"));
-							boolTags = false;
-						} else if (qName.equalsIgnoreCase("BODY")) {
-							idea.setBody(builder.toString());
-							boolBody = false;
-						} else if (qName.equalsIgnoreCase("CREATED")) {
-							idea.setDateCreated(builder.toString());
-							boolCreated = false;
-						} else if (qName.equalsIgnoreCase("MODIFIED")) {
-							idea.setDateModified(dateHolder.toString());
-							boolModified = false;
+		idea.bodyLoaded = false;
+		try {
+			InputStream in = IdeaStore.openPayload(name);
+			if (in != null) {
+				try {
+					XmlReader.read(in, new XmlReader.Handler() {
+						boolean boolTags, boolCreated, boolModified;
+						
+						public boolean startElement(String name) {
+							return !(name.equalsIgnoreCase("BODY") && boolTags && boolCreated && boolModified);
 						}
-					}
-					
-					public void characters(char[] ch, int start, int length) throws SAXException {
-						if (boolTags || boolBody || boolCreated) {
-							builder.append(new String(ch, start, length));
-						} else if (boolModified) {
-							dateHolder.append(new String(ch, start, length));
+						
+						public boolean element(String name, CharSequence text) {
+							if (name.equalsIgnoreCase("TAGS")) {
+								idea.tags = Arrays.asList(text.toString().split(", +"));
+								boolTags = true;
+							} else if (name.equalsIgnoreCase("CREATED")) {
+								idea.setDateCreated(text.toString());
+								boolCreated = true;
+							} else if (name.equalsIgnoreCase("MODIFIED")) {
+								idea.setDateModified(text.toString());
+								boolModified = true;
+							}
+							return true;
 						}
-					}
-				};
-				
-				saxParser.parse(loadFile, handler);
-			} catch (SAXException | ParserConfigurationException | IOException ex) {
-				Data.printErrorMessage(ex);
+					});
+				} finally {
+					in.close();
+				}
 			}
+		} catch (IOException ex) {
+			Data.printErrorMessage(ex);
 		}
 		
 		return idea;
 	}
 	
 	/**
-	 * Calls a helper method to load the names of all files which end with the suffix ".idea" in the
-	 * default directory and all of its subdirectories. The idea's name and its corresponding category
-	 * are added to the provided TreeSet objects.
+	 * Reads the body of this idea from the idea store.
+	 */
+	private void loadBody() {
+		bodyLoaded = true;
+		try {
+			InputStream in = IdeaStore.openPayload(name);
+			if (in != null) {
+				try {
+					XmlReader.read(in, new XmlReader.Handler() {
+						public boolean element(String name, CharSequence text) {
+							if (name.equalsIgnoreCase("BODY")) {
+								body = text.toString();
+								return false;
+							}
+							return true;
+						}
+					});
+				} finally {
+					in.close();
+				}
+			}
+		} catch (IOException ex) {
+			Data.printErrorMessage(ex);
+		}
+	}
+	
+	/**
+	 * Loads an idea which was saved by a previous version of the application
+	 * as an individual XML file.
 	 * 
-	 * @param ideaNameTree lists the names of all the ideas found
-	 * @param ideaCategoryTree lists the categories corresponding to each idea found
-	 * @throws IllegalArgumentException if either parameter is null
+	 * @param loadFile the file to load the idea from
+	 * @param name the name of the idea to load
+	 * @param category the category of the idea to load
+	 * @return a new Idea object with the data loaded from the file as its values, or null if it could not be loaded
 	 */
-	public static void loadAllIdeaNames(TreeSet<String> ideaNameTree, TreeMap<String, String> ideaCategoryTree) throws IllegalArgumentException {
-		if (ideaNameTree == null || ideaCategoryTree == null) {
-			throw new IllegalArgumentException("parameters cannot be null");
+	static Idea loadLegacyIdea(File loadFile, String name, String category) {
+		Idea idea = new Idea(name, category, null, null, null);
+		try {
+			InputStream in = new BufferedInputStream(new FileInputStream(loadFile));
+			try {
+				decode(in, idea);
+			} finally {
+				in.close();
+			}
+		} catch (IOException ex) {
+			Data.printErrorMessage(ex);
+			return null;
 		}
-		File root = new File(Data.getDefaultDirectory() + "/Ideabook");
-		loadAllIdeaNames(root, ideaNameTree, ideaCategoryTree);
+		
+		return idea;
 	}
 	
 	/**
-	 * Recursive method which checks a file to see if it is an idea. If so, it and its category
-	 * are added to the <code>TreeSet</code> and <code>TreeMap</code> objects, respectively. If
-	 * the file is a directory, the method is recursively called on it so all subdirectories
-	 * are searched as well.
+	 * Parses an XML document of an idea and sets the tags, body and dates
+	 * of <code>idea</code> to the values found.
 	 * 
-	 * @param file the file to check
-	 * @param ideaNameTree lists the names of all the ideas found
-	 * @param ideaCategoryTree lists the categories corresponding to each idea found
+	 * @param in the XML document to parse
+	 * @param idea the idea to set the values of
+	 * @throws IOException if the document could not be read
+	 * @see ca.josephroque.idea.io.XmlReader
 	 */
-	private static void loadAllIdeaNames(File file, TreeSet<String> ideaNameTree, TreeMap<String, String> ideaCategoryTree) {
-		if (file != null && file.exists()) {
-			if (file.isDirectory()) {
-				File[] listOfFiles = file.listFiles();
-				for (File f:listOfFiles)
-					loadAllIdeaNames(f, ideaNameTree, ideaCategoryTree);
-			} else {
-				String fileName = file.getName();
-				String fileCategory = file.getParent();
-				fileCategory = fileCategory.substring(fileCategory.lastIndexOf("/") + 1);
-				if (fileName.endsWith(".idea")) {
-					ideaNameTree.add(fileName.substring(0,fileName.lastIndexOf(".")));
-					ideaCategoryTree.put(fileName.substring(0,fileName.lastIndexOf(".")), fileCategory);
+	private static void decode(InputStream in, final Idea idea) throws IOException {
+		XmlReader.read(in, new XmlReader.Handler() {
+			public boolean element(String name, CharSequence text) {
+				//Fields are set directly, since the setters would mark the idea as modified now
+				if (name.equalsIgnoreCase("TAGS")) {
+					idea.tags = Arrays.asList(text.toString().split(", +"));
+				} else if (name.equalsIgnoreCase("BODY")) {
+					idea.body = text.toString();
+					idea.bodyLoaded = true;
+				} else if (name.equalsIgnoreCase("CREATED")) {
+					idea.setDateCreated(text.toString());
+				} else if (name.equalsIgnoreCase("MODIFIED")) {
+					idea.setDateModified(text.toString());
 				}
+				return true;
 			}
+		});
+	}
+	
+	/**
+	 * Loads the names of all the ideas in the idea store. The idea's name and its corresponding
+	 * category are added to the provided TreeSet and TreeMap objects.
+	 * 
+	 * @param ideaNameTree lists the names of all the ideas found
+	 * @param ideaCategoryTree lists the categories corresponding to each idea found
+	 * @throws IllegalArgumentException if either parameter is null
+	 */
+	public static void loadAllIdeaNames(TreeSet<String> ideaNameTree, TreeMap<String, String> ideaCategoryTree) throws IllegalArgumentException {
+		if (ideaNameTree == null || ideaCategoryTree == null) {
+			throw new IllegalArgumentException("parameters cannot be null");
+		}
+		
+		List<String> names = new ArrayList<String>();
+		List<String> categories = new ArrayList<String>();
+		IdeaStore.listIdeas(names, categories);
+		for (int i = 0; i < names.size(); i++) {
+			ideaNameTree.add(names.get(i));
+			ideaCategoryTree.put(names.get(i), categories.get(i));
 		}
 	}
 }
@@ -0,0 +1,155 @@
+package ca.josephroque.idea.config;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Remembers recently loaded ideas, so moving between the search, view and edit
+ * panels and back does not read and parse the same idea from {@link IdeaStore}
+ * again.
+ * <p>
+ * Ideas are weighed by the length of their body, and the least recently used
+ * are evicted once the total weight passes <code>MAX_WEIGHT</code>. Saving or
+ * editing an idea replaces its entry, and deleting a category empties the
+ * cache. An idea read from the store is only kept if the cache did not change
+ * while it was being read, so a load which races a save never restores the old
+ * contents. Ideas handed out by the cache are shared and must not be modified.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class IdeaCache {
+
+	/** Most total weight of the cached ideas, in characters */
+	private static final long MAX_WEIGHT = 4 * 1024 * 1024;
+	/** Weight added to each idea for its name, tags and dates, in characters */
+	private static final int ENTRY_WEIGHT = 128;
+
+	/** The cached ideas keyed by their upper case name, from least to most recently used */
+	private static final LinkedHashMap<String, Idea> entries = new LinkedHashMap<String, Idea>(64, 0.75f, true);
+	/** Total weight of the ideas in <code>entries</code> */
+	private static long totalWeight = 0;
+	/** Incremented each time an entry is replaced or removed */
+	private static long version = 0;
+	/** Number of loads answered by the cache */
+	private static long hits = 0;
+	/** Number of loads which read the idea from the store */
+	private static long misses = 0;
+
+	/**
+	 * Returns the idea with the given name, reading it from the store through
+	 * {@link Idea#loadIdea(String, String)} if it is not cached or was cached under
+	 * a different category.
+	 *
+	 * @param name the name of the idea
+	 * @param category the category of the idea
+	 * @return the idea, which must not be modified
+	 */
+	public static Idea load(String name, String category) {
+		long startVersion;
+		synchronized (IdeaCache.class) {
+			Idea cached = entries.get(name.toUpperCase());
+			if (cached != null && cached.getCategory().equals(category)) {
+				hits++;
+				return cached;
+			}
+			misses++;
+			startVersion = version;
+		}
+
+		Idea idea = Idea.loadIdea(name, category);
+		synchronized (IdeaCache.class) {
+			//An idea whose body could not be read is not kept, so the next load tries again
+			if (startVersion == version && idea.getBody() != null)
+				store(idea);
+		}
+		return idea;
+	}
+
+	/**
+	 * Caches an idea which has just been saved, replacing any previous entry for it.
+	 *
+	 * @param idea the saved idea, which must not be modified afterwards
+	 */
+	public static synchronized void put(Idea idea) {
+		version++;
+		store(idea);
+	}
+
+	/**
+	 * Removes the idea with the given name from the cache.
+	 *
+	 * @param name the name of the idea
+	 */
+	public static synchronized void invalidate(String name) {
+		version++;
+		Idea removed = entries.remove(name.toUpperCase());
+		if (removed != null)
+			totalWeight -= weigh(removed);
+	}
+
+	/**
+	 * Removes every idea from the cache.
+	 */
+	public static synchronized void clear() {
+		version++;
+		entries.clear();
+		totalWeight = 0;
+	}
+
+	/**
+	 * Returns the number of loads which were answered without reading the store.
+	 * @return the number of cache hits
+	 */
+	public static synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of loads which read the idea from the store.
+	 * @return the number of cache misses
+	 */
+	public static synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of ideas in the cache.
+	 * @return the number of cached ideas
+	 */
+	public static synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Adds an idea to <code>entries</code> and evicts the least recently used
+	 * ideas until the total weight is below <code>MAX_WEIGHT</code>. Ideas which
+	 * are heavier than the whole cache are not kept.
+	 */
+	private static void store(Idea idea) {
+		String key = idea.getName().toUpperCase();
+		Idea previous = entries.remove(key);
+		if (previous != null)
+			totalWeight -= weigh(previous);
+
+		long weight = weigh(idea);
+		if (weight > MAX_WEIGHT)
+			return;
+		entries.put(key, idea);
+		totalWeight += weight;
+
+		Iterator<Idea> eldest = entries.values().iterator();
+		while (totalWeight > MAX_WEIGHT) {
+			totalWeight -= weigh(eldest.next());
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Returns the weight of an idea, which is the length of its body.
+	 */
+	private static long weigh(Idea idea) {
+		String body = idea.getBody();
+		return ENTRY_WEIGHT + ((body == null) ? 0:body.length());
+	}
+}
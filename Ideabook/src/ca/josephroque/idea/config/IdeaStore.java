@@ -0,0 +1,918 @@
+package ca.josephroque.idea.config;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import ca.josephroque.idea.Data;
+import ca.josephroque.idea.io.AtomicFile;
+import ca.josephroque.idea.io.SyncScheduler;
+
+/**
+ * Append-only segment file which stores every idea created by the user.
+ * <p>
+ * Each save appends a single record to the end of the file and updates an
+ * in-memory index of record offsets, so reading an idea back is a single
+ * positioned read. Records which have been replaced or deleted are left in
+ * place until the file is compacted on a background thread.
+ * <p>
+ * Each record is laid out as the length of the remainder of the record, the
+ * record type, encoding flags, the idea's name and category, the payload
+ * and a CRC32 checksum of everything after the length. Payloads larger than
+ * <code>COMPRESSION_THRESHOLD</code> are compressed with Deflate when that
+ * makes them smaller, in which case the payload begins with its uncompressed
+ * length and the record is flagged with <code>FLAG_DEFLATE</code>.
+ * <p>
+ * When the store is closed, the index of records is saved to a snapshot beside
+ * it, so the next start reads the index directly rather than every record, as
+ * long as the store has not been changed in between.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class IdeaStore {
+
+	/** Identifies a file as an idea store */
+	private static final int STORE_MAGIC = 0x49444541;
+	/** Version of the record layout written to the store */
+	private static final int STORE_VERSION = 1;
+	/** Number of bytes in the header at the start of the store */
+	private static final int HEADER_LENGTH = 8;
+	/** Identifies a file as a snapshot of the index of records */
+	private static final int SNAPSHOT_MAGIC = 0x534E4150;
+	/** Version of the snapshot layout */
+	private static final int SNAPSHOT_VERSION = 1;
+
+	/** Record type which stores the payload of an idea */
+	private static final byte RECORD_PUT = 1;
+	/** Record type which marks an idea as deleted */
+	private static final byte RECORD_DELETE = 2;
+
+	/** Encoding flag of a payload which has been compressed with Deflate */
+	private static final byte FLAG_DEFLATE = 1;
+	/** Minimum length of a payload, in bytes, before it will be compressed */
+	private static final int COMPRESSION_THRESHOLD = 1024;
+
+	/** Minimum number of unused bytes before the store will be compacted */
+	private static final long COMPACTION_MIN_GARBAGE = 1024 * 1024;
+	/** Fraction of the store which must be unused before it will be compacted */
+	private static final double COMPACTION_GARBAGE_RATIO = 0.5;
+
+	/** Index of the most recent record for each idea, keyed by its upper case name */
+	private static HashMap<String, Record> index = new HashMap<String, Record>();
+	/** Channel used to read and append records */
+	private static FileChannel channel = null;
+	/** Offset at which the next record will be appended */
+	private static long endOfStore = 0;
+	/** Total number of bytes used by records still referenced by <code>index</code> */
+	private static long liveBytes = 0;
+	/** Indicates whether a compaction is currently running */
+	private static boolean compacting = false;
+
+	/**
+	 * The location of a record in the store and the identifying
+	 * information of the idea it holds.
+	 */
+	private static class Record {
+		/** The name of the idea */
+		private final String name;
+		/** The category of the idea */
+		private final String category;
+		/** Encoding flags of the payload */
+		private final byte flags;
+		/** Offset of the start of the record */
+		private final long offset;
+		/** Total length of the record, in bytes */
+		private final int length;
+		/** Offset of the payload */
+		private final long payloadOffset;
+		/** Length of the payload, in bytes */
+		private final int payloadLength;
+		/** Length of the payload once it has been uncompressed, in bytes */
+		private final int rawLength;
+		/** CRC32 checksum stored at the end of the record */
+		private final int checksum;
+
+		private Record(String name, String category, byte flags, long offset, int length, long payloadOffset, int payloadLength, int rawLength, int checksum) {
+			this.name = name;
+			this.category = category;
+			this.flags = flags;
+			this.offset = offset;
+			this.length = length;
+			this.payloadOffset = payloadOffset;
+			this.payloadLength = payloadLength;
+			this.rawLength = rawLength;
+			this.checksum = checksum;
+		}
+
+		/**
+		 * Returns a copy of this record shifted by <code>shift</code> bytes.
+		 * @param shift the number of bytes to move the record by
+		 * @return a record identical to this one at a new offset
+		 */
+		private Record shift(long shift) {
+			return new Record(name, category, flags, offset + shift, length, payloadOffset + shift, payloadLength, rawLength, checksum);
+		}
+	}
+
+	/**
+	 * Returns the file which the store is saved to.
+	 * @return the location of the store
+	 */
+	private static File getStoreFile() {
+		return new File(Data.getDefaultDirectory() + "/Ideabook/config/ideas.dat");
+	}
+
+	/**
+	 * Returns the file which the index of records is saved to when the store is closed.
+	 * @return the location of the snapshot
+	 */
+	private static File getSnapshotFile() {
+		return new File(Data.getDefaultDirectory() + "/Ideabook/config/ideas.snap");
+	}
+
+	/**
+	 * Opens the store and rebuilds the index of records. If the store has not changed
+	 * since it was last closed, the index is read from the snapshot written by
+	 * {@link #close()}, and otherwise by reading through the file. If the
+	 * store does not exist yet, it is created and any ideas saved by previous versions of the
+	 * application as individual files are imported into it. A partially written record at the
+	 * end of the file, left by the application exiting during a save, is discarded.
+	 *
+	 * @throws IOException if the store could not be opened
+	 */
+	public static synchronized void open() throws IOException {
+		if (channel != null)
+			return;
+
+		File directory = new File(Data.getDefaultDirectory() + "/Ideabook/config");
+		directory.mkdirs();
+		directory = null;
+
+		File storeFile = getStoreFile();
+		boolean newStore = !storeFile.exists() || storeFile.length() < HEADER_LENGTH;
+		channel = new RandomAccessFile(storeFile, "rw").getChannel();
+		index = new HashMap<String, Record>();
+		liveBytes = 0;
+
+		if (newStore) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			header.putInt(STORE_MAGIC).putInt(STORE_VERSION).flip();
+			channel.truncate(0);
+			channel.write(header, 0);
+			endOfStore = HEADER_LENGTH;
+			getSnapshotFile().delete();
+			importLegacyIdeas();
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			readFully(channel, header, 0);
+			header.flip();
+			if (header.getInt() != STORE_MAGIC || header.getInt() != STORE_VERSION) {
+				channel.close();
+				channel = null;
+				throw new IOException("unrecognized idea store " + storeFile);
+			}
+
+			endOfStore = readSnapshot(storeFile, channel.size(), index);
+			if (endOfStore < 0) {
+				index.clear();
+				endOfStore = scan(channel, HEADER_LENGTH, channel.size(), index, 0);
+			}
+			if (endOfStore < channel.size()) {
+				channel.truncate(endOfStore);
+			}
+			liveBytes = countLiveBytes(index);
+			compactIfNeeded();
+		}
+	}
+
+	/**
+	 * Closes the channel to the store and saves the index of records to a snapshot,
+	 * so the next call to {@link #open()} does not have to read through the store.
+	 */
+	public static synchronized void close() {
+		if (channel == null)
+			return;
+
+		try {
+			channel.force(false);
+			channel.close();
+			writeSnapshot(getStoreFile());
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+		}
+		channel = null;
+		index.clear();
+	}
+
+	/**
+	 * Returns true if an idea with the given name, ignoring case, is in the store.
+	 *
+	 * @param name the name of the idea
+	 * @return true if the idea exists, false otherwise
+	 */
+	public static synchronized boolean contains(String name) {
+		return index.containsKey(name.toUpperCase());
+	}
+
+	/**
+	 * Returns the category of the idea with the given name, or null if
+	 * there is no such idea in the store.
+	 *
+	 * @param name the name of the idea
+	 * @return the category of the idea
+	 */
+	public static synchronized String getCategory(String name) {
+		Record record = index.get(name.toUpperCase());
+		return (record == null) ? null:record.category;
+	}
+
+	/**
+	 * Adds the name and category of every idea in the store to the provided lists.
+	 *
+	 * @param names list to add the names of the ideas to
+	 * @param categories list to add the category of each idea to, in the same order as <code>names</code>
+	 */
+	public static synchronized void listIdeas(List<String> names, List<String> categories) {
+		for (Record record:index.values()) {
+			names.add(record.name);
+			categories.add(record.category);
+		}
+	}
+
+	/**
+	 * Returns the total length of the payloads of every idea in the store before compression.
+	 * @return the number of bytes the payloads would take up if none were compressed
+	 */
+	public static synchronized long getRawPayloadBytes() {
+		long total = 0;
+		for (Record record:index.values())
+			total += record.rawLength;
+		return total;
+	}
+
+	/**
+	 * Returns the total length of the payloads of every idea as they are stored.
+	 * @return the number of bytes the payloads take up in the store
+	 */
+	public static synchronized long getStoredPayloadBytes() {
+		long total = 0;
+		for (Record record:index.values())
+			total += record.payloadLength;
+		return total;
+	}
+
+	/**
+	 * Returns the number of ideas in the store.
+	 * @return the number of ideas
+	 */
+	public static synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Appends a record containing <code>payload</code> to the store, replacing any
+	 * previous record for an idea with the same name.
+	 *
+	 * @param name the name of the idea
+	 * @param category the category of the idea
+	 * @param payload the data of the idea
+	 * @throws IOException if the record could not be written
+	 */
+	public static synchronized void put(String name, String category, byte[] payload) throws IOException {
+		append(RECORD_PUT, name, category, payload);
+	}
+
+	/**
+	 * Appends a record to the store which deletes the idea with the given name.
+	 * Does nothing if the idea is not in the store.
+	 *
+	 * @param name the name of the idea to delete
+	 * @throws IOException if the record could not be written
+	 */
+	public static synchronized void remove(String name) throws IOException {
+		if (index.containsKey(name.toUpperCase()))
+			append(RECORD_DELETE, name, "", new byte[0]);
+	}
+
+	/**
+	 * Deletes every idea in the store which belongs to the given category.
+	 *
+	 * @param category the category to delete the ideas of
+	 * @throws IOException if the records could not be written
+	 */
+	public static synchronized void removeCategory(String category) throws IOException {
+		List<String> names = new ArrayList<String>();
+		for (Record record:index.values()) {
+			if (record.category.equalsIgnoreCase(category))
+				names.add(record.name);
+		}
+		for (String name:names)
+			append(RECORD_DELETE, name, "", new byte[0]);
+	}
+
+	/**
+	 * Reads the payload of the idea with the given name from the store.
+	 *
+	 * @param name the name of the idea
+	 * @return the payload of the idea, or null if it is not in the store
+	 * @throws IOException if the record could not be read
+	 */
+	public static byte[] get(String name) throws IOException {
+		Record record = getRecord(name);
+		if (record == null)
+			return null;
+
+		ByteBuffer payload = ByteBuffer.allocate(record.payloadLength);
+		record = readPayload(name, record, payload, 0);
+		if ((record.flags & FLAG_DEFLATE) == 0)
+			return payload.array();
+
+		Inflater inflater = new Inflater();
+		try {
+			byte[] raw = new byte[payload.getInt(0)];
+			inflater.setInput(payload.array(), 4, payload.capacity() - 4);
+			int inflated = 0;
+			while (inflated < raw.length && !inflater.finished()) {
+				int count = inflater.inflate(raw, inflated, raw.length - inflated);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new EOFException("compressed idea is truncated");
+				inflated += count;
+			}
+			return raw;
+		} catch (DataFormatException ex) {
+			throw new IOException(ex);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Opens a stream over the payload of the idea with the given name. The payload
+	 * is read from the store in small pieces as the stream is consumed, so a caller
+	 * which only needs the beginning of the payload never reads the rest of it.
+	 * Compressed payloads are uncompressed as they are read. The stream must be
+	 * closed once the caller is finished with it.
+	 *
+	 * @param name the name of the idea
+	 * @return a stream of the payload of the idea, or null if it is not in the store
+	 * @throws IOException if the store is not open
+	 */
+	public static InputStream openPayload(String name) throws IOException {
+		Record record = getRecord(name);
+		if (record == null)
+			return null;
+
+		InputStream in = new PayloadInputStream(name, record);
+		if ((record.flags & FLAG_DEFLATE) == 0)
+			return in;
+
+		new DataInputStream(in).readInt();
+		return new InflaterInputStream(in);
+	}
+
+	/**
+	 * Returns the record for the idea with the given name.
+	 */
+	private static synchronized Record getRecord(String name) throws IOException {
+		if (channel == null)
+			throw new IOException("idea store is not open");
+		return index.get(name.toUpperCase());
+	}
+
+	/**
+	 * Fills <code>buffer</code> with the bytes of a record's payload, starting <code>from</code>
+	 * bytes into the payload. If the store is compacted while the payload is being read, the
+	 * record is looked up again at its new offset. Compaction copies each record unchanged, so
+	 * reading only resumes if the record found there has the same checksum; an idea saved again
+	 * in the meantime, even with a payload of the same length, is reported as changed.
+	 *
+	 * @param name the name of the idea
+	 * @param record the record of the idea, when it was last looked up
+	 * @param buffer the buffer to fill, starting at position 0
+	 * @param from the offset into the payload to start reading from
+	 * @return the record which was read, which may have moved since it was looked up
+	 * @throws IOException if the payload could not be read, or the idea was replaced since it was looked up
+	 */
+	private static Record readPayload(String name, Record record, ByteBuffer buffer, long from) throws IOException {
+		for (int attempt = 0; ; attempt++) {
+			FileChannel readChannel;
+			synchronized (IdeaStore.class) {
+				readChannel = channel;
+			}
+			if (readChannel == null)
+				throw new IOException("idea store is not open");
+
+			try {
+				readFully(readChannel, buffer, record.payloadOffset + from);
+				return record;
+			} catch (ClosedChannelException closed) {
+				Record moved = getRecord(name);
+				if (attempt >= 2 || moved == null || moved.checksum != record.checksum
+						|| moved.payloadLength != record.payloadLength || moved.flags != record.flags)
+					throw new IOException("idea was changed while it was being read", closed);
+				record = moved;
+				buffer.position(0);
+			}
+		}
+	}
+
+	/**
+	 * Stream over the payload of a single record, which reads the record in pieces.
+	 */
+	private static class PayloadInputStream extends InputStream {
+		/** Size of each piece of the payload which is read */
+		private static final int CHUNK_LENGTH = 1024;
+
+		/** The name of the idea being read */
+		private final String name;
+		/** The record being read */
+		private Record record;
+		/** Holds the most recently read piece of the payload */
+		private final ByteBuffer chunk;
+		/** Offset into the payload of the next piece to read */
+		private long nextChunk = 0;
+
+		private PayloadInputStream(String name, Record record) {
+			this.name = name;
+			this.record = record;
+			this.chunk = ByteBuffer.allocate(Math.min(CHUNK_LENGTH, Math.max(record.payloadLength, 1)));
+			this.chunk.limit(0);
+		}
+
+		/**
+		 * Reads the next piece of the payload into <code>chunk</code>.
+		 * @return false if the end of the payload has been reached
+		 */
+		private boolean fill() throws IOException {
+			if (chunk.hasRemaining())
+				return true;
+			if (nextChunk >= record.payloadLength)
+				return false;
+
+			chunk.clear();
+			chunk.limit((int) Math.min(chunk.capacity(), record.payloadLength - nextChunk));
+			record = readPayload(name, record, chunk, nextChunk);
+			nextChunk += chunk.limit();
+			chunk.flip();
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill())
+				return -1;
+			return chunk.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (!fill())
+				return -1;
+
+			int count = Math.min(len, chunk.remaining());
+			chunk.get(b, off, count);
+			return count;
+		}
+	}
+
+	/**
+	 * Builds a record and appends it to the end of the store, then updates the index.
+	 *
+	 * @param type the type of record
+	 * @param name the name of the idea
+	 * @param category the category of the idea
+	 * @param payload the data of the idea
+	 * @throws IOException if the record could not be written
+	 */
+	private static void append(byte type, String name, String category, byte[] payload) throws IOException {
+		if (channel == null)
+			throw new IOException("idea store is not open");
+
+		int rawLength = payload.length;
+		byte flags = 0;
+		if (type == RECORD_PUT && payload.length >= COMPRESSION_THRESHOLD) {
+			byte[] compressed = compress(payload);
+			if (compressed.length < payload.length) {
+				payload = compressed;
+				flags = FLAG_DEFLATE;
+			}
+		}
+
+		ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(payload.length + 64);
+		DataOutputStream out = new DataOutputStream(recordBytes);
+		out.writeInt(0);
+		out.writeByte(type);
+		out.writeByte(flags);
+		out.writeUTF(name);
+		out.writeUTF(category);
+		int payloadStart = out.size();
+		out.write(payload);
+
+		byte[] bytes = recordBytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 4, bytes.length - 4);
+		int checksum = (int) crc.getValue();
+		out.writeInt(checksum);
+		out.flush();
+
+		ByteBuffer record = ByteBuffer.wrap(recordBytes.toByteArray());
+		record.putInt(0, record.capacity() - 4);
+		long offset = endOfStore;
+		while (record.hasRemaining())
+			channel.write(record, offset + record.position());
+		SyncScheduler.sync(channel);
+		endOfStore += record.capacity();
+
+		Record previous = apply(index, type, name, category, flags, offset, record.capacity(), offset + payloadStart, payload.length, rawLength, checksum);
+		if (previous != null)
+			liveBytes -= previous.length;
+		if (type == RECORD_PUT)
+			liveBytes += record.capacity();
+
+		compactIfNeeded();
+	}
+
+	/**
+	 * Compresses a payload with Deflate, prefixed by its uncompressed length.
+	 *
+	 * @param payload the payload to compress
+	 * @return the compressed payload
+	 */
+	private static byte[] compress(byte[] payload) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.length / 2);
+		DataOutputStream out = new DataOutputStream(compressed);
+		out.writeInt(payload.length);
+
+		Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(payload);
+			deflater.finish();
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+		} finally {
+			deflater.end();
+		}
+		out.flush();
+		return compressed.toByteArray();
+	}
+
+	/**
+	 * Applies a record to an index, either replacing or deleting the entry for the idea.
+	 *
+	 * @return the entry which was replaced or deleted, or null if there was none
+	 */
+	private static Record apply(HashMap<String, Record> index, byte type, String name, String category, byte flags, long offset, int length, long payloadOffset, int payloadLength, int rawLength, int checksum) {
+		String key = name.toUpperCase();
+		if (type == RECORD_PUT)
+			return index.put(key, new Record(name, category, flags, offset, length, payloadOffset, payloadLength, rawLength, checksum));
+		else
+			return index.remove(key);
+	}
+
+	/**
+	 * Reads records from the channel between <code>start</code> and <code>end</code> and applies
+	 * them to the index. Stops at the first record which is incomplete or fails its checksum.
+	 *
+	 * @param source the channel to read from
+	 * @param start offset of the first record
+	 * @param end offset to stop reading at
+	 * @param index the index to apply the records to
+	 * @param shift number of bytes to add to the offset of each record before it is indexed
+	 * @return the offset after the last valid record
+	 * @throws IOException if the channel could not be read
+	 */
+	private static long scan(FileChannel source, long start, long end, HashMap<String, Record> index, long shift) throws IOException {
+		ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+		CRC32 crc = new CRC32();
+		long offset = start;
+
+		while (offset + 4 <= end) {
+			lengthBuffer.clear();
+			readFully(source, lengthBuffer, offset);
+			int length = lengthBuffer.getInt(0);
+			if (length < 4 || offset + 4 + length > end)
+				break;
+
+			ByteBuffer recordBuffer = ByteBuffer.allocate(length);
+			readFully(source, recordBuffer, offset + 4);
+			byte[] bytes = recordBuffer.array();
+			crc.reset();
+			crc.update(bytes, 0, length - 4);
+			int checksum = recordBuffer.getInt(length - 4);
+			if ((int) crc.getValue() != checksum)
+				break;
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length - 4));
+			byte type = in.readByte();
+			byte flags = in.readByte();
+			String name = in.readUTF();
+			String category = in.readUTF();
+			int payloadLength = in.available();
+			long payloadOffset = offset + 4 + (length - 4 - payloadLength);
+			int rawLength = ((flags & FLAG_DEFLATE) != 0 && payloadLength >= 4) ? in.readInt():payloadLength;
+
+			if (type == RECORD_PUT || type == RECORD_DELETE)
+				apply(index, type, name, category, flags, offset + shift, length + 4, payloadOffset + shift, payloadLength, rawLength, checksum);
+			offset += 4 + length;
+		}
+
+		return offset;
+	}
+
+	/**
+	 * Saves the index of records along with the length and modification time of the
+	 * store, which must be closed, so the snapshot is only used while the store is unchanged.
+	 *
+	 * @param storeFile the file the store is saved to
+	 * @throws IOException if the snapshot could not be written
+	 */
+	private static void writeSnapshot(File storeFile) throws IOException {
+		final long storeLength = storeFile.length();
+		final long storeModified = storeFile.lastModified();
+		final List<Record> records = new ArrayList<Record>(index.values());
+		AtomicFile.write(getSnapshotFile(), new AtomicFile.Content() {
+			public void writeTo(OutputStream stream) throws IOException {
+				DataOutputStream out = new DataOutputStream(stream);
+				out.writeInt(SNAPSHOT_MAGIC);
+				out.writeInt(SNAPSHOT_VERSION);
+				out.writeLong(storeLength);
+				out.writeLong(storeModified);
+				out.writeInt(records.size());
+				for (Record record:records) {
+					out.writeUTF(record.name);
+					out.writeUTF(record.category);
+					out.writeByte(record.flags);
+					out.writeLong(record.offset);
+					out.writeInt(record.length);
+					out.writeLong(record.payloadOffset);
+					out.writeInt(record.payloadLength);
+					out.writeInt(record.rawLength);
+					out.writeInt(record.checksum);
+				}
+				out.flush();
+			}
+		});
+	}
+
+	/**
+	 * Reads the index of records from the snapshot written when the store was last
+	 * closed. The snapshot is deleted once it has been read, since the store may
+	 * change from then on, and is ignored if the length or modification time of the
+	 * store is not what it was when the snapshot was written.
+	 *
+	 * @param storeFile the file the store is saved to
+	 * @param storeLength the length of the store
+	 * @param index the index to add each record to
+	 * @return the offset after the last record, or -1 if there is no usable snapshot
+	 */
+	private static long readSnapshot(File storeFile, long storeLength, HashMap<String, Record> index) {
+		File snapshotFile = getSnapshotFile();
+		if (!snapshotFile.exists())
+			return -1;
+
+		long storeModified = storeFile.lastModified();
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION
+					|| in.readLong() != storeLength || in.readLong() != storeModified)
+				return -1;
+
+			int recordCount = in.readInt();
+			for (int i = 0; i < recordCount; i++) {
+				Record record = new Record(in.readUTF(), in.readUTF(), in.readByte(), in.readLong(),
+						in.readInt(), in.readLong(), in.readInt(), in.readInt(), in.readInt());
+				index.put(record.name.toUpperCase(), record);
+			}
+			return storeLength;
+		} catch (IOException io) {
+			//A damaged snapshot is only a missed shortcut, so the store is read through instead
+			return -1;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException io) {
+					Data.printErrorMessage(io);
+				}
+			}
+			snapshotFile.delete();
+		}
+	}
+
+	/**
+	 * Reads bytes from the channel at the given position until the buffer is full.
+	 *
+	 * @throws EOFException if the end of the channel is reached before the buffer is filled
+	 */
+	private static void readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (source.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException();
+		}
+	}
+
+	/**
+	 * Returns the total length of the records in the index.
+	 */
+	private static long countLiveBytes(HashMap<String, Record> index) {
+		long total = 0;
+		for (Record record:index.values())
+			total += record.length;
+		return total;
+	}
+
+	/**
+	 * Starts a compaction on a background thread if enough of the store is taken
+	 * up by records which have been replaced or deleted.
+	 */
+	private static void compactIfNeeded() {
+		long garbage = endOfStore - HEADER_LENGTH - liveBytes;
+		if (compacting || garbage < COMPACTION_MIN_GARBAGE || garbage < (endOfStore - HEADER_LENGTH) * COMPACTION_GARBAGE_RATIO)
+			return;
+
+		compacting = true;
+		Thread compactionThread = new Thread("Ideabook store compaction") {
+			public void run() {
+				try {
+					compact();
+				} catch (IOException io) {
+					Data.printErrorMessage(io);
+				} finally {
+					synchronized (IdeaStore.class) {
+						compacting = false;
+					}
+				}
+			}
+		};
+		compactionThread.setDaemon(true);
+		compactionThread.start();
+	}
+
+	/**
+	 * Rewrites the store so it only contains the most recent record for each idea.
+	 * <p>
+	 * The live records are copied to a new file without holding the lock on the store, so
+	 * saves can continue while the copy is made. Any records appended during the copy are
+	 * then moved across with the lock held and the new file replaces the old one.
+	 *
+	 * @throws IOException if the store could not be compacted
+	 */
+	private static void compact() throws IOException {
+		FileChannel source;
+		long snapshotEnd;
+		List<Record> snapshot;
+		synchronized (IdeaStore.class) {
+			if (channel == null)
+				return;
+			source = channel;
+			snapshotEnd = endOfStore;
+			snapshot = new ArrayList<Record>(index.values());
+		}
+
+		File storeFile = getStoreFile();
+		File compactFile = new File(storeFile.getPath() + ".compact");
+		RandomAccessFile compactAccess = new RandomAccessFile(compactFile, "rw");
+		FileChannel target = compactAccess.getChannel();
+		boolean replaced = false;
+
+		try {
+			target.truncate(0);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			header.putInt(STORE_MAGIC).putInt(STORE_VERSION).flip();
+			target.write(header, 0);
+
+			HashMap<String, Record> compactIndex = new HashMap<String, Record>();
+			long offset = HEADER_LENGTH;
+			for (Record record:snapshot) {
+				ByteBuffer recordBuffer = ByteBuffer.allocate(record.length);
+				readFully(source, recordBuffer, record.offset);
+				recordBuffer.flip();
+				while (recordBuffer.hasRemaining())
+					target.write(recordBuffer, offset + recordBuffer.position());
+				compactIndex.put(record.name.toUpperCase(), record.shift(offset - record.offset));
+				offset += record.length;
+			}
+
+			synchronized (IdeaStore.class) {
+				if (channel != source)
+					return;
+
+				long shift = offset - snapshotEnd;
+				long tailLength = endOfStore - snapshotEnd;
+				if (tailLength > 0) {
+					long copied = 0;
+					while (copied < tailLength)
+						copied += source.transferTo(snapshotEnd + copied, tailLength - copied, target.position(offset + copied));
+					scan(source, snapshotEnd, endOfStore, compactIndex, shift);
+				}
+				target.force(false);
+				target.close();
+				compactAccess.close();
+
+				//The store is closed so it can be replaced on every platform, and is
+				//reopened unchanged if the replacement fails
+				channel.close();
+				try {
+					AtomicFile.replace(compactFile, storeFile);
+				} catch (IOException io) {
+					channel = reopen(storeFile);
+					throw io;
+				}
+				replaced = true;
+
+				channel = new RandomAccessFile(storeFile, "rw").getChannel();
+				index = compactIndex;
+				endOfStore = offset + tailLength;
+				liveBytes = countLiveBytes(index);
+			}
+		} finally {
+			if (!replaced) {
+				target.close();
+				compactAccess.close();
+				compactFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Opens a new channel to the store after the previous one was closed. If the store
+	 * cannot be opened, the error is printed and the store is left closed.
+	 *
+	 * @param storeFile the file the store is saved to
+	 * @return the new channel, or null if the store could not be opened
+	 */
+	private static FileChannel reopen(File storeFile) {
+		try {
+			return new RandomAccessFile(storeFile, "rw").getChannel();
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+			return null;
+		}
+	}
+
+	/**
+	 * Imports ideas which were saved by previous versions of the application as individual
+	 * files in each category's directory. Each file is deleted once its idea has been
+	 * written to the store.
+	 *
+	 * @throws IOException if an idea could not be written to the store
+	 */
+	private static void importLegacyIdeas() throws IOException {
+		File root = new File(Data.getDefaultDirectory() + "/Ideabook");
+		File[] categoryDirectories = root.listFiles();
+		if (categoryDirectories == null)
+			return;
+
+		List<File> imported = new ArrayList<File>();
+		for (File directory:categoryDirectories) {
+			if (!directory.isDirectory() || directory.getName().equals("config"))
+				continue;
+
+			File[] ideaFiles = directory.listFiles();
+			for (File ideaFile:ideaFiles) {
+				String fileName = ideaFile.getName();
+				if (!ideaFile.isFile() || !fileName.endsWith(".idea"))
+					continue;
+
+				Idea idea = Idea.loadLegacyIdea(ideaFile, fileName.substring(0, fileName.lastIndexOf(".")), directory.getName());
+				if (idea != null) {
+					append(RECORD_PUT, idea.getName(), idea.getCategory(), Idea.encode(idea));
+					imported.add(ideaFile);
+				}
+			}
+		}
+
+		if (imported.size() > 0) {
+			channel.force(false);
+			for (File ideaFile:imported)
+				ideaFile.delete();
+		}
+	}
+}
@@ -0,0 +1,708 @@
+package ca.josephroque.idea.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import ca.josephroque.idea.Data;
+import ca.josephroque.idea.io.AtomicFile;
+import ca.josephroque.idea.io.SyncScheduler;
+import ca.josephroque.idea.search.BkTree;
+import ca.josephroque.idea.search.Bm25;
+import ca.josephroque.idea.search.SearchCache;
+import ca.josephroque.idea.search.Tokenizer;
+import ca.josephroque.idea.search.TrigramIndex;
+
+/**
+ * Case-insensitive index of the names of every idea, which assigns each idea
+ * a small integer id. Ids are never reused and do not change when an idea is
+ * renamed or moved to a different category, so other indexes may refer to
+ * ideas by their id.
+ * <p>
+ * The index is loaded once when the application starts and changes are
+ * appended to a journal, so checking whether a name is taken never has to
+ * look at the ideas themselves. Each entry ends with a checksum, and the
+ * journal is cut off at the first entry which is incomplete or does not
+ * match it, such as one torn by a crash. The trigrams of each name are kept in a
+ * {@link TrigramIndex}, so ideas can be found by any part of their name.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class NameIndex {
+
+	/** Identifies a file as a name index */
+	private static final int INDEX_MAGIC = 0x4E414D45;
+	/** Version of the journal layout */
+	private static final int INDEX_VERSION = 1;
+	/** Number of bytes in the header at the start of the journal */
+	private static final int HEADER_LENGTH = 8;
+
+	/** Journal entry which assigns an id to a name and category */
+	private static final byte ENTRY_PUT = 1;
+	/** Journal entry which frees an id */
+	private static final byte ENTRY_REMOVE = 2;
+
+	/** Number of journal entries which must be obsolete before the journal is rewritten */
+	private static final int REWRITE_THRESHOLD = 4096;
+
+	/** The id of each idea, keyed by its upper case name */
+	private static HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	/** The name of each idea, indexed by id. Null if the id is not in use */
+	private static ArrayList<String> names = new ArrayList<String>();
+	/** The category of each idea, indexed by id. Null if the id is not in use */
+	private static ArrayList<String> categories = new ArrayList<String>();
+	/** The ids of the ideas in each category, keyed by the upper case name of the category */
+	private static HashMap<String, BitSet> categoryIdeas = new HashMap<String, BitSet>();
+	/** The ids which are in use */
+	private static BitSet liveIds = new BitSet();
+	/** Trigrams of the name of each idea, keyed by id */
+	private static TrigramIndex nameGrams = new TrigramIndex();
+	/** Total number of terms in the names of every idea */
+	private static long nameTermCount = 0;
+	/** Number of names each term appears in */
+	private static HashMap<String, Integer> nameTerms = new HashMap<String, Integer>();
+	/** Every term in the names of ideas, for finding terms which are misspelled in a query */
+	private static BkTree nameTermTree = new BkTree();
+	/** Channel used to append entries to the journal */
+	private static FileChannel channel = null;
+	/** Offset at which the next journal entry will be written */
+	private static long endOfJournal = 0;
+	/** Number of entries in the journal which have since been replaced */
+	private static int obsoleteEntries = 0;
+	/** Every id in use, ordered by name. Null until it is needed after a change */
+	private static int[] idsByName = null;
+	/** The position of each id in <code>idsByName</code>, or -1 if the id is not in use */
+	private static int[] nameOrder = null;
+
+	/**
+	 * Returns the file which the journal is saved to.
+	 * @return the location of the journal
+	 */
+	private static File getIndexFile() {
+		return new File(Data.getDefaultDirectory() + "/Ideabook/config/names.idx");
+	}
+
+	/**
+	 * Loads the index from its journal, then checks it against the contents of
+	 * {@link IdeaStore}. Ideas in the store which are missing from the index are
+	 * given new ids and ids of ideas which are no longer in the store are freed,
+	 * so the two agree even if the application exited between writing one and
+	 * the other. {@link IdeaStore#open()} must be called first.
+	 *
+	 * @throws IOException if the journal could not be read or written
+	 */
+	public static synchronized void load() throws IOException {
+		if (channel != null)
+			return;
+
+		ids = new HashMap<String, Integer>();
+		names = new ArrayList<String>();
+		categories = new ArrayList<String>();
+		categoryIdeas = new HashMap<String, BitSet>();
+		liveIds = new BitSet();
+		nameGrams = new TrigramIndex();
+		nameTermCount = 0;
+		nameTerms = new HashMap<String, Integer>();
+		nameTermTree = new BkTree();
+		obsoleteEntries = 0;
+		idsByName = null;
+		nameOrder = null;
+
+		File indexFile = getIndexFile();
+		channel = new RandomAccessFile(indexFile, "rw").getChannel();
+		endOfJournal = readJournal();
+		if (endOfJournal < channel.size())
+			channel.truncate(endOfJournal);
+
+		List<String> storeNames = new ArrayList<String>();
+		List<String> storeCategories = new ArrayList<String>();
+		IdeaStore.listIdeas(storeNames, storeCategories);
+
+		HashMap<String, String> storeCategoryByName = new HashMap<String, String>();
+		for (int i = 0; i < storeNames.size(); i++)
+			storeCategoryByName.put(storeNames.get(i).toUpperCase(), storeCategories.get(i));
+
+		for (int id = 0; id < names.size(); id++) {
+			String name = names.get(id);
+			if (name != null && !storeCategoryByName.containsKey(name.toUpperCase()))
+				writeEntry(ENTRY_REMOVE, id, name, "");
+		}
+		for (int i = 0; i < storeNames.size(); i++) {
+			Integer id = ids.get(storeNames.get(i).toUpperCase());
+			if (id == null)
+				writeEntry(ENTRY_PUT, names.size(), storeNames.get(i), storeCategories.get(i));
+			else if (!storeNames.get(i).equals(names.get(id)) || !storeCategories.get(i).equals(categories.get(id)))
+				writeEntry(ENTRY_PUT, id, storeNames.get(i), storeCategories.get(i));
+		}
+
+		if (obsoleteEntries > REWRITE_THRESHOLD && obsoleteEntries > ids.size())
+			rewriteJournal();
+	}
+
+	/**
+	 * Closes the channel to the journal. The index will be reloaded by the
+	 * next call to {@link #load()}.
+	 */
+	public static synchronized void close() {
+		if (channel == null)
+			return;
+
+		try {
+			channel.force(false);
+			channel.close();
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+		}
+		channel = null;
+	}
+
+	/**
+	 * Returns true if an idea with the given name exists, ignoring case.
+	 *
+	 * @param name the name of the idea
+	 * @return true if the name is taken, false otherwise
+	 */
+	public static synchronized boolean contains(String name) {
+		return ids.containsKey(name.toUpperCase());
+	}
+
+	/**
+	 * Returns the id of the idea with the given name, ignoring case.
+	 *
+	 * @param name the name of the idea
+	 * @return the id of the idea, or -1 if there is no such idea
+	 */
+	public static synchronized int getId(String name) {
+		Integer id = ids.get(name.toUpperCase());
+		return (id == null) ? -1:id.intValue();
+	}
+
+	/**
+	 * Returns the name of the idea with the given id.
+	 *
+	 * @param id the id of the idea
+	 * @return the name of the idea, or null if the id is not in use
+	 */
+	public static synchronized String getName(int id) {
+		return (id < 0 || id >= names.size()) ? null:names.get(id);
+	}
+
+	/**
+	 * Returns the category of the idea with the given id.
+	 *
+	 * @param id the id of the idea
+	 * @return the category of the idea, or null if the id is not in use
+	 */
+	public static synchronized String getCategory(int id) {
+		return (id < 0 || id >= categories.size()) ? null:categories.get(id);
+	}
+
+	/**
+	 * Returns the ids of the ideas in a category, ignoring case.
+	 *
+	 * @param category the name of the category, or null for every category
+	 * @return a copy of the set of ids
+	 */
+	public static synchronized BitSet getIdeasInCategory(String category) {
+		if (category == null)
+			return (BitSet) liveIds.clone();
+		BitSet ideas = categoryIdeas.get(category.toUpperCase());
+		return (ideas == null) ? new BitSet():(BitSet) ideas.clone();
+	}
+
+	/**
+	 * Finds every idea whose name contains the given text, ignoring case.
+	 *
+	 * @param text the text to look for
+	 * @return the ids of the matching ideas, in ascending order
+	 */
+	public static synchronized int[] findNamesContaining(String text) {
+		return nameGrams.search(text);
+	}
+
+	/**
+	 * Finds every idea whose name contains a term close to each term of the given text,
+	 * allowing a few typing mistakes in each term. The number of mistakes allowed depends
+	 * on the length of the term, as given by {@link BkTree#getTolerance(int)}, and terms
+	 * too short to allow any must appear exactly.
+	 *
+	 * @param text the text to look for
+	 * @return the ids of the matching ideas, in ascending order
+	 */
+	public static synchronized int[] findNamesLike(String text) {
+		BitSet matches = null;
+		for (String queryTerm:Tokenizer.tokenize(text)) {
+			if (queryTerm == null)
+				continue;
+
+			BitSet termMatches = new BitSet();
+			int tolerance = BkTree.getTolerance(queryTerm.length());
+			List<String> similarTerms = (tolerance == 0) ? Collections.singletonList(queryTerm):nameTermTree.search(queryTerm, tolerance);
+			for (String similarTerm:similarTerms) {
+				for (int id:nameGrams.search(similarTerm))
+					termMatches.set(id);
+			}
+
+			if (matches == null)
+				matches = termMatches;
+			else
+				matches.and(termMatches);
+			if (matches.isEmpty())
+				break;
+		}
+		if (matches == null)
+			return new int[0];
+
+		int[] ideaIds = new int[matches.cardinality()];
+		int count = 0;
+		for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1))
+			ideaIds[count++] = id;
+		return ideaIds;
+	}
+
+	/**
+	 * Adds the relevance of the name of each idea to the terms of a query to
+	 * <code>scores</code>, using {@link Bm25}. A term in a name matches a term of
+	 * the query if it begins with it, so a word which is still being typed counts.
+	 * The names are split into terms without holding the lock on the index, so
+	 * several sets of ideas can be scored at once.
+	 *
+	 * @param queryTerms the distinct terms of the query, in lower case
+	 * @param ideaIds the ids of the ideas to score
+	 * @param scores the score of each idea in <code>ideaIds</code>, which is added to
+	 * @param boost the weight of a name relative to other fields
+	 */
+	public static void scoreNames(List<String> queryTerms, int[] ideaIds, double[] scores, double boost) {
+		int ideaCount;
+		double averageLength;
+		int[] documentFrequencies = new int[queryTerms.size()];
+		String[] ideaNames = new String[ideaIds.length];
+		synchronized (NameIndex.class) {
+			ideaCount = ids.size();
+			averageLength = (ideaCount == 0) ? 0:(double) nameTermCount / ideaCount;
+			for (int j = 0; j < documentFrequencies.length; j++)
+				documentFrequencies[j] = nameGrams.search(queryTerms.get(j)).length;
+			for (int i = 0; i < ideaIds.length; i++)
+				ideaNames[i] = getName(ideaIds[i]);
+		}
+
+		for (int i = 0; i < ideaIds.length; i++) {
+			String name = ideaNames[i];
+			if (name == null)
+				continue;
+
+			List<String> nameTerms = Tokenizer.tokenize(name);
+			for (int j = 0; j < documentFrequencies.length; j++) {
+				int termFrequency = 0;
+				for (String nameTerm:nameTerms) {
+					if (nameTerm != null && nameTerm.startsWith(queryTerms.get(j)))
+						termFrequency++;
+				}
+				scores[i] += boost * Bm25.score(termFrequency, nameTerms.size(), averageLength,
+						documentFrequencies[j], ideaCount, Bm25.B);
+			}
+		}
+	}
+
+	/**
+	 * Returns the names of a range of ideas, holding the lock on the index once
+	 * for the whole range.
+	 *
+	 * @param ideaIds the ids of the ideas
+	 * @param start the position in <code>ideaIds</code> of the first idea
+	 * @param end the position after the last idea
+	 * @return the name of each idea in the range, or null for an id which is not in use
+	 */
+	public static synchronized String[] getNames(int[] ideaIds, int start, int end) {
+		String[] rangeNames = new String[end - start];
+		for (int i = start; i < end; i++)
+			rangeNames[i - start] = getName(ideaIds[i]);
+		return rangeNames;
+	}
+
+	/**
+	 * Returns the given ideas ordered by name, in the same order as a sorted set of
+	 * the names would be. The order of every name is kept until the index next
+	 * changes, so ordering ideas repeatedly does not compare names.
+	 *
+	 * @param ideaIds the ids of the ideas. Ids which are not in use are left out
+	 * @return the ids, ordered by the names of the ideas
+	 */
+	public static synchronized int[] sortByName(BitSet ideaIds) {
+		sortNames();
+		int count = ideaIds.cardinality();
+		if (count < idsByName.length / 8) {
+			//Few ideas, so sort them by their position rather than filter every id
+			long[] keys = new long[count];
+			int found = 0;
+			for (int id = ideaIds.nextSetBit(0); id >= 0; id = ideaIds.nextSetBit(id + 1)) {
+				if (id < nameOrder.length && nameOrder[id] >= 0)
+					keys[found++] = ((long) nameOrder[id] << 32) | id;
+			}
+			Arrays.sort(keys, 0, found);
+			int[] sorted = new int[found];
+			for (int i = 0; i < found; i++)
+				sorted[i] = (int) keys[i];
+			return sorted;
+		}
+
+		int[] sorted = new int[Math.min(count, idsByName.length)];
+		int found = 0;
+		for (int id:idsByName) {
+			if (ideaIds.get(id))
+				sorted[found++] = id;
+		}
+		return (found == sorted.length) ? sorted:Arrays.copyOf(sorted, found);
+	}
+
+	/**
+	 * Returns the position of each idea when every name is sorted, so lists of ideas
+	 * ordered by name can be compared without looking at the names. The positions
+	 * are only valid until the index next changes.
+	 *
+	 * @return the position of each id, or -1 if the id is not in use. The array
+	 * must not be modified
+	 */
+	public static synchronized int[] getNameOrder() {
+		sortNames();
+		return nameOrder;
+	}
+
+	/**
+	 * Builds <code>idsByName</code> and <code>nameOrder</code> if the index has changed since they were last built.
+	 */
+	private static void sortNames() {
+		if (idsByName != null)
+			return;
+
+		Integer[] sorted = new Integer[liveIds.cardinality()];
+		int count = 0;
+		for (int id = liveIds.nextSetBit(0); id >= 0; id = liveIds.nextSetBit(id + 1))
+			sorted[count++] = id;
+		Arrays.sort(sorted, 0, count, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return names.get(a).compareTo(names.get(b));
+			}
+		});
+
+		idsByName = new int[count];
+		nameOrder = new int[names.size()];
+		Arrays.fill(nameOrder, -1);
+		for (int i = 0; i < count; i++) {
+			idsByName[i] = sorted[i];
+			nameOrder[sorted[i]] = i;
+		}
+	}
+
+	/**
+	 * Returns the number of ideas in the index.
+	 * @return the number of ids in use
+	 */
+	public static synchronized int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Returns one more than the largest id which has been assigned.
+	 * @return the upper bound of ids in use
+	 */
+	public static synchronized int getIdLimit() {
+		return names.size();
+	}
+
+	/**
+	 * Assigns an id to a new idea.
+	 *
+	 * @param name the name of the idea
+	 * @param category the category of the idea
+	 * @return the id assigned to the idea
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized int add(String name, String category) throws IOException {
+		Integer id = ids.get(name.toUpperCase());
+		int newId = (id == null) ? names.size():id.intValue();
+		writeEntry(ENTRY_PUT, newId, name, category);
+		return newId;
+	}
+
+	/**
+	 * Changes the name and category of an existing idea, keeping its id. If the idea
+	 * does not exist, it is assigned a new id.
+	 *
+	 * @param oldName the current name of the idea
+	 * @param newName the new name of the idea
+	 * @param category the new category of the idea
+	 * @return the id of the idea
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized int update(String oldName, String newName, String category) throws IOException {
+		Integer id = ids.get(oldName.toUpperCase());
+		if (id == null)
+			return add(newName, category);
+
+		writeEntry(ENTRY_PUT, id.intValue(), newName, category);
+		return id.intValue();
+	}
+
+	/**
+	 * Frees the id of the idea with the given name. Does nothing if there is no such idea.
+	 *
+	 * @param name the name of the idea
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void remove(String name) throws IOException {
+		Integer id = ids.get(name.toUpperCase());
+		if (id != null)
+			writeEntry(ENTRY_REMOVE, id.intValue(), name, "");
+	}
+
+	/**
+	 * Frees the id of every idea in the given category.
+	 *
+	 * @param category the category to remove the ideas of
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void removeCategory(String category) throws IOException {
+		for (int id = 0; id < categories.size(); id++) {
+			if (categories.get(id) != null && categories.get(id).equalsIgnoreCase(category))
+				writeEntry(ENTRY_REMOVE, id, names.get(id), "");
+		}
+	}
+
+	/**
+	 * Applies an entry to the in-memory index.
+	 */
+	private static void apply(byte type, int id, String name, String category) {
+		SearchCache.invalidate();
+		idsByName = null;
+		nameOrder = null;
+		while (names.size() <= id) {
+			names.add(null);
+			categories.add(null);
+		}
+
+		String previousName = names.get(id);
+		String previousCategory = categories.get(id);
+		if (previousName != null) {
+			ids.remove(previousName.toUpperCase());
+			countNameTerms(previousName, -1);
+			obsoleteEntries++;
+		}
+
+		if (type == ENTRY_PUT) {
+			Integer previousId = ids.put(name.toUpperCase(), id);
+			countNameTerms(name, 1);
+			if (previousId != null && previousId.intValue() != id) {
+				countNameTerms(names.get(previousId), -1);
+				moveToCategory(previousId, categories.get(previousId), null);
+				names.set(previousId, null);
+				categories.set(previousId, null);
+				nameGrams.remove(previousId);
+			}
+			names.set(id, name);
+			categories.set(id, category);
+			moveToCategory(id, previousCategory, category);
+			if (!name.equals(previousName))
+				nameGrams.put(id, name);
+		} else {
+			moveToCategory(id, previousCategory, null);
+			names.set(id, null);
+			categories.set(id, null);
+			nameGrams.remove(id);
+			obsoleteEntries++;
+		}
+	}
+
+	/**
+	 * Moves an id from the set of ideas in one category to the set of another.
+	 *
+	 * @param id the id of the idea
+	 * @param oldCategory the category the idea was in, or null if the id was not in use
+	 * @param newCategory the category the idea is now in, or null if the id is no longer in use
+	 */
+	private static void moveToCategory(int id, String oldCategory, String newCategory) {
+		if (oldCategory != null) {
+			BitSet oldIdeas = categoryIdeas.get(oldCategory.toUpperCase());
+			if (oldIdeas != null) {
+				oldIdeas.clear(id);
+				if (oldIdeas.isEmpty())
+					categoryIdeas.remove(oldCategory.toUpperCase());
+			}
+			liveIds.clear(id);
+		}
+		if (newCategory != null) {
+			BitSet newIdeas = categoryIdeas.get(newCategory.toUpperCase());
+			if (newIdeas == null) {
+				newIdeas = new BitSet();
+				categoryIdeas.put(newCategory.toUpperCase(), newIdeas);
+			}
+			newIdeas.set(id);
+			liveIds.set(id);
+		}
+	}
+
+	/**
+	 * Adds or removes the terms of a name from <code>nameTerms</code> and <code>nameTermTree</code>.
+	 *
+	 * @param name the name of an idea
+	 * @param change 1 if the name was added, or -1 if it was removed
+	 */
+	private static void countNameTerms(String name, int change) {
+		List<String> terms = Tokenizer.tokenize(name);
+		nameTermCount += change * terms.size();
+		for (String term:terms) {
+			if (term == null)
+				continue;
+
+			Integer count = nameTerms.get(term);
+			int newCount = ((count == null) ? 0:count.intValue()) + change;
+			if (newCount <= 0) {
+				nameTerms.remove(term);
+				nameTermTree.remove(term);
+			} else {
+				nameTerms.put(term, newCount);
+				if (count == null)
+					nameTermTree.add(term);
+			}
+		}
+	}
+
+	/**
+	 * Appends an entry to the journal and applies it to the in-memory index.
+	 */
+	private static void writeEntry(byte type, int id, String name, String category) throws IOException {
+		if (channel == null)
+			throw new IOException("name index is not loaded");
+
+		ByteBuffer entry = ByteBuffer.wrap(encodeEntry(type, id, name, category));
+		while (entry.hasRemaining())
+			channel.write(entry, endOfJournal + entry.position());
+		SyncScheduler.sync(channel);
+		endOfJournal += entry.capacity();
+		apply(type, id, name, category);
+	}
+
+	/**
+	 * Returns the bytes of a journal entry, prefixed by its length and followed by
+	 * a CRC32 checksum of everything between the two.
+	 */
+	private static byte[] encodeEntry(byte type, int id, String name, String category) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeByte(type);
+		out.writeInt(id);
+		out.writeUTF(name);
+		out.writeUTF(category);
+		out.writeInt(0);
+		out.flush();
+
+		byte[] entry = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(entry, 4, entry.length - 8);
+		ByteBuffer.wrap(entry).putInt(0, entry.length - 4).putInt(entry.length - 4, (int) crc.getValue());
+		return entry;
+	}
+
+	/**
+	 * Reads the journal from the start and applies each entry to the index. If the
+	 * journal is empty, its header is written.
+	 *
+	 * @return the offset after the last complete entry with a valid checksum
+	 */
+	private static long readJournal() throws IOException {
+		long size = channel.size();
+		if (size < HEADER_LENGTH) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			header.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).flip();
+			channel.truncate(0);
+			channel.write(header, 0);
+			return HEADER_LENGTH;
+		}
+
+		ByteBuffer contents = ByteBuffer.allocate((int) size);
+		while (contents.hasRemaining()) {
+			if (channel.read(contents, contents.position()) < 0)
+				throw new EOFException();
+		}
+		contents.flip();
+		if (contents.getInt() != INDEX_MAGIC || contents.getInt() != INDEX_VERSION)
+			throw new IOException("unrecognized name index " + getIndexFile());
+
+		//A torn or damaged entry ends the journal, along with anything after it
+		CRC32 crc = new CRC32();
+		while (contents.remaining() >= 4) {
+			int start = contents.position();
+			int length = contents.getInt();
+			if (length <= 4 || length > contents.remaining()) {
+				contents.position(start);
+				break;
+			}
+			crc.reset();
+			crc.update(contents.array(), contents.position(), length - 4);
+			if ((int) crc.getValue() != contents.getInt(contents.position() + length - 4)) {
+				contents.position(start);
+				break;
+			}
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents.array(), contents.position(), length - 4));
+			try {
+				byte type = in.readByte();
+				int id = in.readInt();
+				String name = in.readUTF();
+				String category = in.readUTF();
+				apply(type, id, name, category);
+			} catch (EOFException eof) {
+				contents.position(start);
+				break;
+			}
+			contents.position(contents.position() + length);
+		}
+
+		return contents.position();
+	}
+
+	/**
+	 * Replaces the journal with one which only contains an entry for each id in use.
+	 * The new journal is written beside the old one and renamed over it, so a crash
+	 * leaves one or the other.
+	 */
+	private static void rewriteJournal() throws IOException {
+		ByteArrayOutputStream journal = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(journal);
+		out.writeInt(INDEX_MAGIC);
+		out.writeInt(INDEX_VERSION);
+		for (int id = 0; id < names.size(); id++) {
+			if (names.get(id) != null)
+				out.write(encodeEntry(ENTRY_PUT, id, names.get(id), categories.get(id)));
+		}
+		out.flush();
+
+		byte[] contents = journal.toByteArray();
+		File indexFile = getIndexFile();
+		channel.close();
+		try {
+			AtomicFile.write(indexFile, contents);
+			endOfJournal = contents.length;
+			obsoleteEntries = 0;
+		} finally {
+			channel = new RandomAccessFile(indexFile, "rw").getChannel();
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package ca.josephroque.idea.config;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+
+import ca.josephroque.idea.search.IdBitmap;
+import ca.josephroque.idea.search.SearchCache;
+import ca.josephroque.idea.search.SearchQuery;
+import ca.josephroque.idea.search.SearchQueue;
+import ca.josephroque.idea.search.ShardedSearch;
+
+/**
+ * The order in which the clauses of a {@link SearchQuery} are matched against
+ * the indexes.
+ * <p>
+ * Each clause becomes a step. Clauses which can be answered by an index are
+ * intersected with each other, starting with the one expected to match the
+ * fewest ideas, so the set of candidates is small from the start and the
+ * search stops as soon as it becomes empty. The number of ideas in a tag or
+ * category, or within a range of dates in {@link DateIndex}, is known
+ * exactly, while text is assumed to match many ideas. Clauses which only
+ * exclude ideas are subtracted from the candidates last.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class QueryPlan {
+
+	/** Step which intersects the ideas matching a clause with the candidates */
+	private static final int STEP_INTERSECT = 0;
+	/** Step which removes the ideas matching a negated term from the candidates */
+	private static final int STEP_EXCLUDE = 1;
+
+	/** The steps of the plan, in the order they are run */
+	private final List<Step> steps;
+
+	/**
+	 * A clause of the query, and how it is applied to the candidates.
+	 */
+	private static class Step {
+		/** The terms of the clause, of which at least one must match */
+		private final List<SearchQuery.Term> terms;
+		/** How the clause is applied, such as <code>STEP_INTERSECT</code> */
+		private final int type;
+		/** The number of ideas the clause is expected to match */
+		private final int estimate;
+
+		private Step(List<SearchQuery.Term> terms, int type, int estimate) {
+			this.terms = terms;
+			this.type = type;
+			this.estimate = estimate;
+		}
+	}
+
+	/**
+	 * Creates a plan with the given steps.
+	 * @param steps the steps of the plan, in the order they are run
+	 */
+	private QueryPlan(List<Step> steps) {
+		this.steps = steps;
+	}
+
+	/**
+	 * Orders the clauses of a query into a plan.
+	 *
+	 * @param query the parsed query
+	 * @return the plan for the query
+	 */
+	public static QueryPlan compile(SearchQuery query) {
+		int ideaCount = NameIndex.size();
+		List<Step> steps = new ArrayList<Step>();
+		for (List<SearchQuery.Term> clause:query.getClauses()) {
+			long estimate = 0;
+			for (SearchQuery.Term term:clause)
+				estimate += term.negated ? ideaCount:estimate(term, ideaCount);
+
+			if (clause.size() == 1 && clause.get(0).negated)
+				steps.add(new Step(clause, STEP_EXCLUDE, ideaCount));
+			else
+				steps.add(new Step(clause, STEP_INTERSECT, (int) Math.min(estimate, ideaCount)));
+		}
+
+		Collections.sort(steps, new Comparator<Step>() {
+			public int compare(Step a, Step b) {
+				if (a.type != b.type)
+					return a.type - b.type;
+				return Integer.compare(a.estimate, b.estimate);
+			}
+		});
+		return new QueryPlan(steps);
+	}
+
+	/**
+	 * Finds the ideas in every category which match the query the plan was compiled from.
+	 *
+	 * @param search the search being run, which is abandoned once it is superseded
+	 * @return the ids of the matching ideas, or null if the search was superseded
+	 */
+	public BitSet execute(SearchQueue.Query<?> search) {
+		BitSet candidates = null;
+		for (Step step:steps) {
+			if (search.isSuperseded())
+				return null;
+			if (candidates == null && step.type != STEP_INTERSECT)
+				candidates = NameIndex.getIdeasInCategory(null);
+
+			if (step.type == STEP_INTERSECT) {
+				BitSet matches = matchClause(search, step.terms);
+				if (matches == null)
+					return null;
+				if (candidates == null)
+					candidates = matches;
+				else
+					candidates.and(matches);
+			} else {
+				BitSet matches = matchTerm(search, step.terms.get(0));
+				if (matches == null)
+					return null;
+				candidates.andNot(matches);
+			}
+
+			if (candidates.isEmpty())
+				break;
+		}
+		return (candidates == null) ? NameIndex.getIdeasInCategory(null):candidates;
+	}
+
+	/**
+	 * Returns the number of ideas a term which is not negated is expected to match.
+	 */
+	private static int estimate(SearchQuery.Term term, int ideaCount) {
+		switch (term.field) {
+			case SearchQuery.FIELD_TAG:
+				return TagIndex.getIdeaCount(term.value.toLowerCase(Locale.ENGLISH));
+			case SearchQuery.FIELD_CATEGORY:
+				return NameIndex.getIdeasInCategory(term.value).cardinality();
+			case SearchQuery.FIELD_CREATED:
+				return DateIndex.countCreatedBetween(term.from, term.to);
+			case SearchQuery.FIELD_MODIFIED:
+				return DateIndex.countModifiedBetween(term.from, term.to);
+			default:
+				return ideaCount;
+		}
+	}
+
+	/**
+	 * Finds the ideas which match at least one of the terms of a clause.
+	 *
+	 * @return the ids of the matching ideas, or null if the search was superseded
+	 */
+	private static BitSet matchClause(SearchQueue.Query<?> search, List<SearchQuery.Term> terms) {
+		BitSet matches = new BitSet();
+		for (SearchQuery.Term term:terms) {
+			BitSet termMatches = matchTerm(search, term);
+			if (termMatches == null)
+				return null;
+			if (term.negated) {
+				BitSet others = NameIndex.getIdeasInCategory(null);
+				others.andNot(termMatches);
+				termMatches = others;
+			}
+			matches.or(termMatches);
+		}
+		return matches;
+	}
+
+	/**
+	 * Finds the ideas which match a term, ignoring whether it is negated.
+	 *
+	 * @return the ids of the matching ideas, or null if the search was superseded
+	 */
+	private static BitSet matchTerm(SearchQueue.Query<?> search, SearchQuery.Term term) {
+		switch (term.field) {
+			case SearchQuery.FIELD_TAG:
+				BitSet tagIdeas = new BitSet();
+				TagIndex.getIdeaSet(term.value.toLowerCase(Locale.ENGLISH)).addTo(tagIdeas);
+				return tagIdeas;
+			case SearchQuery.FIELD_CATEGORY:
+				return NameIndex.getIdeasInCategory(term.value);
+			case SearchQuery.FIELD_CREATED:
+				return DateIndex.findCreatedBetween(term.from, term.to);
+			case SearchQuery.FIELD_MODIFIED:
+				return DateIndex.findModifiedBetween(term.from, term.to);
+			default:
+				SearchCache.Entry textMatches = findTextMatches(search, term.value);
+				return (textMatches == null) ? null:(BitSet) textMatches.matches.clone();
+		}
+	}
+
+	/**
+	 * Finds the ids of the ideas in every category which match the given text, and
+	 * adds them to {@link SearchCache} if they were not already there. Names and tags
+	 * are matched through the trigram indexes kept by {@link NameIndex} and
+	 * {@link TagIndex}, unless the results of a shorter search which the text begins
+	 * with are cached, in which case only those ideas are checked. Bodies are matched
+	 * through {@link BodyIndex}, which keeps words in double quotes together as a
+	 * phrase. The quotes are left out when matching names and tags, so a quoted phrase
+	 * matches the names and tags which contain it. Names and tags which are a few
+	 * typing mistakes away from the text also match, but are not used to narrow later
+	 * searches. In a large library, the bodies and the misspellings are each searched
+	 * as a single task on another thread through {@link ShardedSearch}, while names
+	 * and tags are matched on this one.
+	 *
+	 * @param search the search being run, which is abandoned once it is superseded
+	 * @param text the text to search for
+	 * @return the matching ideas, or null if the search was superseded
+	 */
+	public static SearchCache.Entry findTextMatches(SearchQueue.Query<?> search, final String text) {
+		String cacheKey = SearchCache.normalize(text);
+		SearchCache.Entry cached = SearchCache.get(cacheKey);
+		if (cached != null)
+			return cached;
+
+		long cacheVersion = SearchCache.getVersion();
+		final String nameText = text.replace("\"", "");
+		int ideaCount = NameIndex.size();
+		ForkJoinTask<int[]> bodyMatches = ShardedSearch.fork(new Callable<int[]>() {
+			public int[] call() {
+				return BodyIndex.search(text);
+			}
+		}, ideaCount);
+		ForkJoinTask<BitSet> fuzzyMatches = ShardedSearch.fork(new Callable<BitSet>() {
+			public BitSet call() {
+				BitSet matches = new BitSet();
+				for (int ideaId:NameIndex.findNamesLike(nameText))
+					matches.set(ideaId);
+				TagIndex.getIdeasInAny(TagIndex.findTagsLike(nameText)).addTo(matches);
+				return matches;
+			}
+		}, ideaCount);
+
+		BitSet textMatches = new BitSet();
+		List<String> tagNames = TagIndex.findTagsContaining(nameText);
+		SearchCache.Entry prefixMatches = SearchCache.getLongestPrefix(cacheKey);
+
+		if (prefixMatches != null) {
+			String upperText = nameText.toUpperCase();
+			IdBitmap tagIdeas = TagIndex.getIdeasInAny(tagNames);
+			for (int ideaId = prefixMatches.textMatches.nextSetBit(0); ideaId >= 0; ideaId = prefixMatches.textMatches.nextSetBit(ideaId + 1)) {
+				String ideaName = NameIndex.getName(ideaId);
+				if ((ideaName != null && ideaName.toUpperCase().contains(upperText)) || tagIdeas.contains(ideaId))
+					textMatches.set(ideaId);
+			}
+		} else {
+			for (int ideaId:NameIndex.findNamesContaining(nameText))
+				textMatches.set(ideaId);
+			TagIndex.getIdeasInAny(tagNames).addTo(textMatches);
+		}
+		if (search.isSuperseded()) {
+			bodyMatches.cancel(false);
+			fuzzyMatches.cancel(false);
+			return null;
+		}
+
+		BitSet matches = (BitSet) textMatches.clone();
+		for (int ideaId:bodyMatches.join())
+			matches.set(ideaId);
+		matches.or(fuzzyMatches.join());
+
+		SearchCache.Entry entry = new SearchCache.Entry(textMatches, matches);
+		SearchCache.put(cacheKey, entry, cacheVersion);
+		return entry;
+	}
+}
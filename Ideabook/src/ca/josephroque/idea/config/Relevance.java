@@ -0,0 +1,87 @@
+package ca.josephroque.idea.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.josephroque.idea.search.Bm25;
+import ca.josephroque.idea.search.ShardedSearch;
+import ca.josephroque.idea.search.TopScores;
+import ca.josephroque.idea.search.Tokenizer;
+
+/**
+ * Orders the ideas matched by a search from most to least relevant.
+ * <p>
+ * Each idea is scored with {@link Bm25} against the terms of the query in its
+ * name, tags and body, each field weighted by its boost. Each idea is then
+ * given a bonus which fades as the time since it was last modified grows,
+ * read from {@link DateIndex}, since recent ideas are more likely to be the
+ * ones being looked for. Only the ideas shown first are ranked, using a
+ * {@link TopScores} heap, so the full set of matches is never sorted. Large
+ * sets of matches are scored in shards through {@link ShardedSearch}. The tags
+ * and bodies matching the query are copied from their indexes before scoring
+ * begins, so the shards do not wait on each other for the locks on the indexes.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class Relevance {
+
+	/** Weight of a match in the name of an idea */
+	public static final double NAME_BOOST = 3.0;
+	/** Weight of a match in the tags of an idea */
+	public static final double TAG_BOOST = 2.0;
+	/** Weight of a match in the body of an idea */
+	public static final double BODY_BOOST = 1.0;
+	/** Score added to an idea which has just been modified */
+	public static final double RECENCY_BOOST = 1.0;
+	/** Number of days after which the recency bonus of an idea has halved */
+	public static final double RECENCY_HALF_LIFE_DAYS = 30;
+	/** Milliseconds in a day */
+	private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+	/**
+	 * Returns the most relevant of the given ideas to a query.
+	 *
+	 * @param query the text which was searched for
+	 * @param ideaIds the ids of the ideas which matched the query
+	 * @param count the number of ideas to return
+	 * @return the ids of at most <code>count</code> ideas, from most to least relevant
+	 */
+	public static int[] rank(String query, int[] ideaIds, int count) {
+		final List<String> queryTerms = new ArrayList<String>();
+		for (String term:Tokenizer.tokenize(query)) {
+			if (term != null && !queryTerms.contains(term))
+				queryTerms.add(term);
+		}
+
+		final ShardedSearch.Scorer tagScorer = TagIndex.getTagScorer(queryTerms, TAG_BOOST, NameIndex.size());
+		final ShardedSearch.Scorer bodyScorer = BodyIndex.getBodyScorer(queryTerms, BODY_BOOST);
+		final long now = System.currentTimeMillis();
+		return ShardedSearch.findTopScores(ideaIds, count, new ShardedSearch.Scorer() {
+			public void score(int[] shardIds, double[] scores) {
+				if (!queryTerms.isEmpty()) {
+					NameIndex.scoreNames(queryTerms, shardIds, scores, NAME_BOOST);
+					tagScorer.score(shardIds, scores);
+					bodyScorer.score(shardIds, scores);
+				}
+				for (int i = 0; i < shardIds.length; i++)
+					scores[i] += getRecencyBonus(shardIds[i], now);
+			}
+		});
+	}
+
+	/**
+	 * Returns the bonus given to an idea for having been modified recently.
+	 *
+	 * @param ideaId the id of the idea
+	 * @param now the current time, in milliseconds
+	 * @return a bonus from 0 to <code>RECENCY_BOOST</code>
+	 */
+	private static double getRecencyBonus(int ideaId, long now) {
+		long modified = DateIndex.getDateModified(ideaId);
+		if (modified == Long.MIN_VALUE)
+			return 0;
+		double ageInDays = Math.max(0, (now - modified) / MILLIS_PER_DAY);
+		return RECENCY_BOOST * Math.pow(0.5, ageInDays / RECENCY_HALF_LIFE_DAYS);
+	}
+}
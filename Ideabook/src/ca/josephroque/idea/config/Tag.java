@@ -1,28 +1,12 @@
 package ca.josephroque.idea.config;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.List;
-import java.util.TreeMap;
-import java.util.TreeSet;
-
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
+import java.util.Collection;
 
 import ca.josephroque.idea.Data;
+import ca.josephroque.idea.io.XmlReader;
+import ca.josephroque.idea.search.IdBitmap;
 
 /**
  * A Tag object is made up of a name and a set of Idea objects. These
@@ -36,27 +20,36 @@ public class Tag implements Comparable<Tag> {
 	
 	/** An id to identify the Tag */
 	private String id;
-	/** The set of ideas which are 'tagged' with the id */
-	private TreeSet<String> ideas;
-	/** The corresponding category of each idea */
-	private TreeMap<String, String> ideaCategories;
+	/**
+	 * The ids of the ideas which are 'tagged' with the id, as assigned by
+	 * {@link NameIndex}. Names and categories are looked up from the ids
+	 */
+	private IdBitmap ideas;
 	
 	/**
 	 * Initializes a new Tag with the provided id
 	 * @param id the id of the tag
 	 */
 	public Tag(String id) {
+		this(id, new IdBitmap());
+	}
+	
+	/**
+	 * Initializes a new Tag with the provided id and ideas
+	 * @param id the id of the tag
+	 * @param ideas the ids of the ideas in the tag
+	 */
+	Tag(String id, IdBitmap ideas) {
 		this.id = id;
-		ideas = new TreeSet<String>();
-		ideaCategories = new TreeMap<String, String>();
+		this.ideas = ideas;
 	}
 	
 	/**
-	 * Returns an iterator for the set of ideas
-	 * @return ideas.iterator()
+	 * Returns a copy of the ids of the ideas in the tag
+	 * @return the ids of the ideas, as assigned by {@link NameIndex}
 	 */
-	public Iterator<String> ideaIterator() {
-		return ideas.iterator();
+	public IdBitmap getIdeaIds() {
+		return ideas.copy();
 	}
 
 	/**
@@ -89,7 +82,8 @@ public class Tag implements Comparable<Tag> {
 	}
 	
 	/**
-	 * Adds an idea to <code>ideas</code> and its category to <code>ideaCategories</code>
+	 * Adds an idea to <code>ideas</code>. Ideas which have not been saved are skipped,
+	 * since they have no id in {@link NameIndex}
 	 * 
 	 * @param idea the idea to be added
 	 * @param category the category of the idea being added
@@ -99,109 +93,57 @@ public class Tag implements Comparable<Tag> {
 		if (idea == null || category == null) {
 			throw new IllegalArgumentException("idea and category cannot be null");
 		}
-		ideas.add(idea);
-		ideaCategories.put(idea, category);
+		int ideaId = NameIndex.getId(idea);
+		if (ideaId >= 0)
+			ideas.add(ideaId);
 	}
 	
 	/**
-	 * Returns the category corresponding to the given idea, from <code>ideaCategories</code>.
+	 * Returns the category corresponding to the given idea, if the idea is in the tag.
 	 * @param idea the idea to get the category for
-	 * @return ideaCategories.get(idea);
+	 * @return the category of the idea, or null if it is not in the tag
 	 */
 	public String getCategory(String idea) {
-		return ideaCategories.get(idea);
+		int ideaId = NameIndex.getId(idea);
+		return (ideaId >= 0 && ideas.contains(ideaId)) ? NameIndex.getCategory(ideaId):null;
 	}
 	
 	/**
-	 * Saves the given Tag to a file, formatted as an XML document. The document contains
-	 * all of the Tag's ideas and categories.
+	 * Loads a Tag from the tag index corresponding to the given name of the tag. Creates
+	 * and returns a Tag object with the ids of its ideas.
 	 * 
-	 * @param tag the tag to be saved
-	 * @return true if the tag was successfully saved, false otherwise
+	 * @param tagName the tag to be loaded
+	 * @return a new Tag object with the ideas and categories listed in the index
 	 */
-	public static boolean saveTag(Tag tag) {
-		File directory = new File(Data.getDefaultDirectory() + "/Ideabook/config/tags");
-		directory.mkdirs();
-		directory = null;
-		
-		File saveFile = new File(Data.getDefaultDirectory() + "/Ideabook/config/tags/" + tag.getID() + ".tag");
-		if (saveFile.exists())
-			saveFile.delete();
-		
-		Element tagElement = new Element("tag");
-		Document doc = new Document(tagElement);
-		
-		Element content = new Element("content");
-		Element idea;
-		
-		Iterator<String> ideaIterator = tag.ideaIterator();
-		while (ideaIterator.hasNext()) {
-			String ideaName = ideaIterator.next();
-			
-			idea = new Element("idea");
-			idea.setText(ideaName + ":" + tag.getCategory(ideaName));
-			content.addContent(idea);
-		}
-		
-		doc.getRootElement().addContent(content);
-		
-		XMLOutputter xmlOutput = new XMLOutputter();
-		xmlOutput.setFormat(Format.getPrettyFormat());
-		
-		try {
-			xmlOutput.output(doc, new FileWriter(saveFile));
-		} catch (IOException io) {
-			Data.printErrorMessage(io);
-			return false;
-		}
-		
-		return true;
+	public static Tag loadTag(String tagName) {
+		return new Tag(tagName, TagIndex.getIdeaSet(tagName));
 	}
 	
 	/**
-	 * Loads a Tag from a file corresponding to the given name of the tag. Creates
-	 * and returns a Tag object from the file.
+	 * Loads a Tag which was saved by a previous version of the application
+	 * as an individual XML file.
 	 * 
+	 * @param loadFile the file to load the tag from
 	 * @param tagName the tag to be loaded
 	 * @return a new Tag object with the ideas and categories listed in the file
 	 */
-	public static Tag loadTag(String tagName) {
+	static Tag loadLegacyTag(File loadFile, String tagName) {
 		final Tag tag = new Tag(tagName);
-		File loadFile = new File(Data.getDefaultDirectory() + "/Ideabook/config/tags/" + tagName + ".tag");
 		
 		if (loadFile.exists()) {
 			try {
-				SAXParserFactory factory = SAXParserFactory.newInstance();
-				SAXParser saxParser = factory.newSAXParser();
-				
-				DefaultHandler handler = new DefaultHandler() {
-					boolean boolIdea;
-					StringBuilder builder = new StringBuilder();
-					
-					public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-						if (qName.equalsIgnoreCase("idea")) {
-							boolIdea = true;
-						}
-					}
-					
-					public void endElement(String uri, String localName, String qName) throws SAXException {
-						if (qName.equalsIgnoreCase("idea")) {
-							String ideaAndCategory[] = builder.toString().split(":");
-							tag.addIdea(ideaAndCategory[0], ideaAndCategory[1]);
-							boolIdea = false;
+				XmlReader.read(loadFile, new XmlReader.Handler() {
+					public boolean element(String name, CharSequence text) {
+						if (name.equalsIgnoreCase("idea")) {
+							String ideaAndCategory[] = text.toString().split(":");
+							if (ideaAndCategory.length == 2)
+								tag.addIdea(ideaAndCategory[0], ideaAndCategory[1]);
 						}
+						return true;
 					}
-					
-					public void characters(char[] ch, int start, int length) throws SAXException {
-						if (boolIdea) {
-							builder.append(new String(ch, start, length));
-						}
-					}
-				};
-				
-				saxParser.parse(loadFile, handler);
-			} catch (SAXException | ParserConfigurationException | IOException ex) {
-				Data.printErrorMessage(ex);
+				});
+			} catch (IOException io) {
+				Data.printErrorMessage(io);
 			}
 		}
 		
@@ -209,105 +151,27 @@ public class Tag implements Comparable<Tag> {
 	}
 	
 	/**
-	 * Loads the names of all the tags created by the user and adds them to
-	 * the given <code>TreeSet</code> object.
+	 * Adds the given idea to each tag in <code>tagsToAdd</code> and removes it from each
+	 * tag in <code>tagsToRemove</code>. All of the changes are written to the tag index
+	 * at once, so the cost of saving an idea does not depend on how many tags it has.
 	 * 
-	 * @param tagTree lists the names of all of the tags found
-	 * @see ca.josephroque.idea.Data#getDefaultDirectory()
+	 * @param idea the idea to add and remove from the tags
+	 * @param tagsToAdd the tags to add the idea to
+	 * @param tagsToRemove the tags to delete the idea from
+	 * @return true if the tags were successfully updated, false otherwise
+	 * @see ca.josephroque.idea.config.TagIndex#update(int, Collection, Collection)
 	 */
-	public static void loadAllTags(TreeSet<Tag> tagTree) {
-		File directory = new File(Data.getDefaultDirectory() + "/Ideabook/config/tags");
-		if (directory.exists()) {
-			File[] listOfTags = directory.listFiles();
-			for (File f:listOfTags) {
-				if (f.getName().endsWith(".tag")) {
-					tagTree.add(loadTag(f.getName().substring(0,f.getName().lastIndexOf("."))));
-				}
-			}
-		}
-	}
-	
-	/**
-	 * Removes the element from the Tag's XML document which corresponds to the
-	 * given idea.
-	 * 
-	 * @param tagName the tag to delete the idea from
-	 * @param idea the idea to be deleted
-	 */
-	public static void removeIdeaFromTag(String tagName, Idea idea) {
-		File tagFile = new File(Data.getDefaultDirectory() + "/Ideabook/config/tags/" + tagName + ".tag");
-		if (tagFile.exists()) {
-			System.out.println("here?");
-			try {
-				String ideaName = null;
-				SAXBuilder builder = new SAXBuilder();
-				Document doc = (Document) builder.build(tagFile);
-				Element rootNode = doc.getRootElement();
-				Element content = rootNode.getChild("content");
-				
-				List<Element> ideasInTag = content.getChildren("idea");
-				int totalNumberOfIdeas = ideasInTag.size();
-				for (int i = 0; i<totalNumberOfIdeas; i++) {
-					ideaName = ideasInTag.get(i).getText().split(":")[0];
-					if (ideaName.equalsIgnoreCase(idea.getName())) {
-						if (totalNumberOfIdeas == 1) {
-							tagFile.delete();
-						} else {
-							content.removeContent(ideasInTag.get(i));
-							XMLOutputter xmlOutput = new XMLOutputter();
-							xmlOutput.setFormat(Format.getPrettyFormat());
-							xmlOutput.output(doc, new FileWriter(tagFile));
-						}
-						
-						return;
-					}
-				}
-			} catch (IOException | JDOMException ex) {
-				Data.printErrorMessage(ex);
-			}
-		}
-	}
-	
-	/**
-	 * Adds an element to the Tag's XML document with the given Idea object's name
-	 * value and category.
-	 * 
-	 * @param tagName the tag to add the idea to
-	 * @param idea the idea to be added
-	 */
-	public static void addIdeaToTag(String tagName, Idea idea) {
-		File directory = new File(Data.getDefaultDirectory() + "/Ideabook/config/tags");
-		directory.mkdirs();
-		directory = null;
+	public static boolean updateIdeaTags(Idea idea, Collection<String> tagsToAdd, Collection<String> tagsToRemove) {
+		int ideaId = NameIndex.getId(idea.getName());
+		if (ideaId < 0)
+			return false;
 		
-		File tagFile = new File(Data.getDefaultDirectory() + "/Ideabook/config/tags/" + tagName + ".tag");
-		if (tagFile.exists()) {
-			try {
-				SAXBuilder builder = new SAXBuilder();
-				Document doc = (Document) builder.build(tagFile);
-				Element rootNode = doc.getRootElement();
-				Element content = rootNode.getChild("content");
-				
-				List<Element> ideasInTag = content.getChildren("idea");
-				for (int i = 0; i<ideasInTag.size(); i++) {
-					if (ideasInTag.get(i).getText().compareToIgnoreCase(idea.getName()) == 0) {
-						return;
-					}
-				}
-				Element tempElement = new Element("idea");
-				tempElement.setText(idea.getName() + ":" + idea.getCategory());
-				content.addContent(tempElement);
-				
-				XMLOutputter xmlOutput = new XMLOutputter();
-				xmlOutput.setFormat(Format.getPrettyFormat());
-				xmlOutput.output(doc, new FileWriter(tagFile));
-			} catch (IOException | JDOMException ex) {
-				Data.printErrorMessage(ex);
-			}
-		} else {
-			Tag tag = new Tag(tagName);
-			tag.addIdea(idea.getName(), idea.getCategory());
-			saveTag(tag);
+		try {
+			TagIndex.update(ideaId, tagsToAdd, tagsToRemove);
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+			return false;
 		}
+		return true;
 	}
 }
@@ -0,0 +1,703 @@
+package ca.josephroque.idea.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import ca.josephroque.idea.Data;
+import ca.josephroque.idea.io.AtomicFile;
+import ca.josephroque.idea.io.SyncScheduler;
+import ca.josephroque.idea.search.BkTree;
+import ca.josephroque.idea.search.Bm25;
+import ca.josephroque.idea.search.IdBitmap;
+import ca.josephroque.idea.search.SearchCache;
+import ca.josephroque.idea.search.ShardedSearch;
+import ca.josephroque.idea.search.Tokenizer;
+import ca.josephroque.idea.search.TrigramIndex;
+
+/**
+ * Inverted index from the id of each tag to the ids of the ideas which have
+ * been tagged with it. Ideas are identified by the ids assigned by
+ * {@link NameIndex}, and the ideas in each tag are kept in memory as an
+ * {@link IdBitmap}, so tags can be intersected and combined cheaply.
+ * <p>
+ * The whole index is kept in a single file. The file begins with a compact
+ * section holding each tag's posting list, delta and variable-length
+ * encoded, which is followed by a journal of individual postings that have
+ * been added or removed since. Tagging an idea appends one small entry to the
+ * journal, and once the journal grows larger than the compact section the
+ * file is rewritten. Each journal entry ends with a checksum, and the journal
+ * is cut off at the first entry which is incomplete or does not match it.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class TagIndex {
+
+	/** Identifies a file as a tag index */
+	private static final int INDEX_MAGIC = 0x54414753;
+	/** Version of the file layout */
+	private static final int INDEX_VERSION = 1;
+	/** Number of bytes in the header, which holds the magic, the version and the offset of the journal */
+	private static final int HEADER_LENGTH = 16;
+
+	/** Journal entry which adds an idea to a tag */
+	private static final byte ENTRY_ADD = 1;
+	/** Journal entry which removes an idea from a tag */
+	private static final byte ENTRY_REMOVE = 2;
+
+	/** Minimum number of journal entries before the file will be rewritten */
+	private static final int REWRITE_THRESHOLD = 1024;
+
+	/** The ids of the ideas in each tag, keyed by the tag's id */
+	private static TreeMap<String, IdBitmap> postings = new TreeMap<String, IdBitmap>();
+	/** Trigrams of the id of each tag, keyed by the tag's number */
+	private static TrigramIndex tagGrams = new TrigramIndex();
+	/** The number given to each tag in <code>tagGrams</code>, keyed by the tag's id */
+	private static HashMap<String, Integer> tagNumbers = new HashMap<String, Integer>();
+	/** The id of each tag, indexed by its number. Null if the number is not in use */
+	private static ArrayList<String> numberedTags = new ArrayList<String>();
+	/** Numbers which were given to tags that no longer exist, to be reused */
+	private static ArrayList<Integer> freeNumbers = new ArrayList<Integer>();
+	/** The id of every tag, for finding tags which are misspelled in a query */
+	private static BkTree tagTree = new BkTree();
+	/** Channel used to append entries to the journal */
+	private static FileChannel channel = null;
+	/** Offset at which the next journal entry will be written */
+	private static long endOfIndex = 0;
+	/** Number of entries in the journal */
+	private static int journalEntries = 0;
+	/** Number of postings in the compact section */
+	private static int compactPostings = 0;
+
+	/**
+	 * Returns the file which the index is saved to.
+	 * @return the location of the index
+	 */
+	private static File getIndexFile() {
+		return new File(Data.getDefaultDirectory() + "/Ideabook/config/tags.idx");
+	}
+
+	/**
+	 * Loads the index with a single read of its file. If the file does not exist yet, it is
+	 * created and any tags saved by previous versions of the application as individual files
+	 * are imported into it. {@link NameIndex#load()} must be called first.
+	 *
+	 * @throws IOException if the index could not be read or written
+	 */
+	public static synchronized void load() throws IOException {
+		if (channel != null)
+			return;
+
+		postings = new TreeMap<String, IdBitmap>();
+		tagGrams = new TrigramIndex();
+		tagNumbers = new HashMap<String, Integer>();
+		numberedTags = new ArrayList<String>();
+		freeNumbers = new ArrayList<Integer>();
+		tagTree = new BkTree();
+		journalEntries = 0;
+		compactPostings = 0;
+
+		File indexFile = getIndexFile();
+		boolean newIndex = !indexFile.exists() || indexFile.length() < HEADER_LENGTH;
+		if (newIndex) {
+			importLegacyTags();
+			rewrite();
+			Data.deleteAllFiles(new File(Data.getDefaultDirectory() + "/Ideabook/config/tags"));
+		} else {
+			channel = new RandomAccessFile(indexFile, "rw").getChannel();
+			endOfIndex = read();
+			if (endOfIndex < channel.size())
+				channel.truncate(endOfIndex);
+		}
+	}
+
+	/**
+	 * Closes the channel to the index. The index will be reloaded by the
+	 * next call to {@link #load()}.
+	 */
+	public static synchronized void close() {
+		if (channel == null)
+			return;
+
+		try {
+			channel.force(false);
+			channel.close();
+		} catch (IOException io) {
+			Data.printErrorMessage(io);
+		}
+		channel = null;
+	}
+
+	/**
+	 * Returns an iterator over the ids of all tags with at least one idea, in sorted order.
+	 * The iterator is over a copy of the ids, so it is not affected by later changes.
+	 *
+	 * @return an iterator of tag ids
+	 */
+	public static synchronized Iterator<String> tagIterator() {
+		return new TreeMap<String, IdBitmap>(postings).keySet().iterator();
+	}
+
+	/**
+	 * Finds every tag whose id contains the given text, ignoring case.
+	 *
+	 * @param text the text to look for
+	 * @return the ids of the matching tags
+	 */
+	public static synchronized List<String> findTagsContaining(String text) {
+		int[] numbers = tagGrams.search(text);
+		List<String> tagNames = new ArrayList<String>(numbers.length);
+		for (int number:numbers)
+			tagNames.add(numberedTags.get(number));
+		return tagNames;
+	}
+
+	/**
+	 * Finds every tag whose id is close to the given text or to one of its terms,
+	 * allowing a few typing mistakes. The number of mistakes allowed depends on
+	 * the length of the text, as given by {@link BkTree#getTolerance(int)}.
+	 *
+	 * @param text the text to look for
+	 * @return the ids of the matching tags
+	 */
+	public static synchronized List<String> findTagsLike(String text) {
+		List<String> words = Tokenizer.tokenize(text);
+		String wholeText = text.trim().toLowerCase(Locale.ENGLISH);
+		if (!words.contains(wholeText))
+			words.add(wholeText);
+
+		List<String> tagNames = new ArrayList<String>();
+		for (String word:words) {
+			if (word == null)
+				continue;
+			int tolerance = BkTree.getTolerance(word.length());
+			if (tolerance == 0)
+				continue;
+			for (String tagName:tagTree.search(word, tolerance)) {
+				if (!tagNames.contains(tagName))
+					tagNames.add(tagName);
+			}
+		}
+		return tagNames;
+	}
+
+	/**
+	 * Returns a copy of the ids of the ideas tagged with the given tag.
+	 *
+	 * @param tagName the id of the tag
+	 * @return the ids of the ideas in the tag, in ascending order
+	 */
+	public static synchronized int[] getIdeas(String tagName) {
+		IdBitmap ideas = postings.get(tagName);
+		if (ideas == null)
+			return new int[0];
+		return ideas.toArray();
+	}
+
+	/**
+	 * Returns the number of ideas tagged with the given tag.
+	 *
+	 * @param tagName the id of the tag
+	 * @return the number of ideas in the tag
+	 */
+	public static synchronized int getIdeaCount(String tagName) {
+		IdBitmap ideas = postings.get(tagName);
+		return (ideas == null) ? 0:ideas.cardinality();
+	}
+
+	/**
+	 * Returns a copy of the set of ideas tagged with the given tag.
+	 *
+	 * @param tagName the id of the tag
+	 * @return the ids of the ideas in the tag
+	 */
+	public static synchronized IdBitmap getIdeaSet(String tagName) {
+		IdBitmap ideas = postings.get(tagName);
+		return (ideas == null) ? new IdBitmap():ideas.copy();
+	}
+
+	/**
+	 * Returns the ideas which are tagged with at least one of the given tags.
+	 *
+	 * @param tagNames the ids of the tags
+	 * @return the ids of the ideas in any of the tags
+	 */
+	public static synchronized IdBitmap getIdeasInAny(Collection<String> tagNames) {
+		IdBitmap union = new IdBitmap();
+		for (String tagName:tagNames) {
+			IdBitmap ideas = postings.get(tagName);
+			if (ideas != null)
+				union = IdBitmap.or(union, ideas);
+		}
+		return union;
+	}
+
+	/**
+	 * Returns the ideas which are tagged with every one of the given tags. The
+	 * smallest tag is intersected first, so the sets only shrink.
+	 *
+	 * @param tagNames the ids of the tags, of which there must be at least one
+	 * @return the ids of the ideas in all of the tags
+	 */
+	public static synchronized IdBitmap getIdeasInAll(Collection<String> tagNames) {
+		List<IdBitmap> sets = new ArrayList<IdBitmap>();
+		for (String tagName:tagNames) {
+			IdBitmap ideas = postings.get(tagName);
+			if (ideas == null)
+				return new IdBitmap();
+			sets.add(ideas);
+		}
+		Collections.sort(sets, new Comparator<IdBitmap>() {
+			public int compare(IdBitmap a, IdBitmap b) {
+				return Integer.compare(a.cardinality(), b.cardinality());
+			}
+		});
+
+		IdBitmap intersection = sets.get(0).copy();
+		for (int i = 1; i < sets.size() && !intersection.isEmpty(); i++)
+			intersection = IdBitmap.and(intersection, sets.get(i));
+		return intersection;
+	}
+
+	/**
+	 * Returns a scorer which adds the relevance of the tags of each idea to the
+	 * terms of a query, using {@link Bm25}. A tag matches a term of the query
+	 * if its id contains the term. Tags are short, so their length is not
+	 * taken into account. The ideas in each matching tag are copied while the
+	 * lock on the index is held, so the scorer never takes the lock and the
+	 * shards of a search can be scored at once.
+	 *
+	 * @param queryTerms the distinct terms of the query, in lower case
+	 * @param boost the weight of tags relative to other fields
+	 * @param ideaCount the number of ideas
+	 * @return a scorer which adds to the score of each idea it is given
+	 */
+	public static synchronized ShardedSearch.Scorer getTagScorer(List<String> queryTerms, final double boost, final int ideaCount) {
+		final List<IdBitmap[]> termSets = new ArrayList<IdBitmap[]>();
+		final List<Integer> documentFrequencies = new ArrayList<Integer>();
+		for (String queryTerm:queryTerms) {
+			int[] numbers = tagGrams.search(queryTerm);
+			if (numbers.length == 0)
+				continue;
+
+			IdBitmap[] sets = new IdBitmap[numbers.length];
+			int documentFrequency = 0;
+			for (int j = 0; j < numbers.length; j++) {
+				sets[j] = postings.get(numberedTags.get(numbers[j])).copy();
+				documentFrequency += sets[j].cardinality();
+			}
+			termSets.add(sets);
+			documentFrequencies.add(documentFrequency);
+		}
+
+		return new ShardedSearch.Scorer() {
+			public void score(int[] ideaIds, double[] scores) {
+				for (int t = 0; t < termSets.size(); t++) {
+					IdBitmap[] sets = termSets.get(t);
+					int documentFrequency = documentFrequencies.get(t);
+					for (int i = 0; i < ideaIds.length; i++) {
+						int termFrequency = 0;
+						for (IdBitmap ideas:sets) {
+							if (ideas.contains(ideaIds[i]))
+								termFrequency++;
+						}
+						scores[i] += boost * Bm25.score(termFrequency, 1, 1, documentFrequency, ideaCount, 0);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Adds an idea to a tag.
+	 *
+	 * @param tagName the id of the tag
+	 * @param ideaId the id of the idea
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void add(String tagName, int ideaId) throws IOException {
+		update(ideaId, Collections.singleton(tagName), Collections.<String>emptySet());
+	}
+
+	/**
+	 * Removes an idea from a tag.
+	 *
+	 * @param tagName the id of the tag
+	 * @param ideaId the id of the idea
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void remove(String tagName, int ideaId) throws IOException {
+		update(ideaId, Collections.<String>emptySet(), Collections.singleton(tagName));
+	}
+
+	/**
+	 * Adds an idea to one set of tags and removes it from another. All of the changes are
+	 * appended to the journal in a single write and synced once, so the cost does not
+	 * depend on the number of tags. Tags which the idea is already in, or is already
+	 * absent from, are skipped. A tag in both sets is removed and then added again.
+	 *
+	 * @param ideaId the id of the idea
+	 * @param tagsToAdd the ids of the tags to add the idea to
+	 * @param tagsToRemove the ids of the tags to remove the idea from
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void update(int ideaId, Collection<String> tagsToAdd, Collection<String> tagsToRemove) throws IOException {
+		if (channel == null)
+			throw new IOException("tag index is not loaded");
+
+		ByteArrayOutputStream batch = new ByteArrayOutputStream();
+		List<String> removed = new ArrayList<String>();
+		List<String> added = new ArrayList<String>();
+		for (String tagName:tagsToRemove) {
+			IdBitmap ideas = postings.get(tagName);
+			if (ideas != null && ideas.contains(ideaId) && !removed.contains(tagName)) {
+				batch.write(encodeEntry(ENTRY_REMOVE, tagName, ideaId));
+				removed.add(tagName);
+			}
+		}
+		for (String tagName:tagsToAdd) {
+			IdBitmap ideas = postings.get(tagName);
+			boolean present = ideas != null && ideas.contains(ideaId) && !removed.contains(tagName);
+			if (tagName.length() > 0 && !present && !added.contains(tagName)) {
+				batch.write(encodeEntry(ENTRY_ADD, tagName, ideaId));
+				added.add(tagName);
+			}
+		}
+		if (batch.size() == 0)
+			return;
+
+		appendBatch(batch);
+		for (String tagName:removed)
+			apply(ENTRY_REMOVE, tagName, ideaId);
+		for (String tagName:added)
+			apply(ENTRY_ADD, tagName, ideaId);
+		journalEntries += removed.size() + added.size();
+		rewriteIfNeeded();
+	}
+
+	/**
+	 * Removes ideas from every tag they are in, such as when the category which held
+	 * them is deleted. All of the changes are appended to the journal in a single write.
+	 *
+	 * @param ideaIds the ids of the ideas to remove
+	 * @throws IOException if the journal could not be written
+	 */
+	public static synchronized void removeIdeas(BitSet ideaIds) throws IOException {
+		if (channel == null)
+			throw new IOException("tag index is not loaded");
+
+		ByteArrayOutputStream batch = new ByteArrayOutputStream();
+		List<String> tagNames = new ArrayList<String>();
+		List<Integer> removedIds = new ArrayList<Integer>();
+		for (Map.Entry<String, IdBitmap> posting:postings.entrySet()) {
+			for (int ideaId = ideaIds.nextSetBit(0); ideaId >= 0; ideaId = ideaIds.nextSetBit(ideaId + 1)) {
+				if (posting.getValue().contains(ideaId)) {
+					batch.write(encodeEntry(ENTRY_REMOVE, posting.getKey(), ideaId));
+					tagNames.add(posting.getKey());
+					removedIds.add(ideaId);
+				}
+			}
+		}
+		if (batch.size() == 0)
+			return;
+
+		appendBatch(batch);
+		for (int i = 0; i < tagNames.size(); i++)
+			apply(ENTRY_REMOVE, tagNames.get(i), removedIds.get(i));
+		journalEntries += tagNames.size();
+		rewriteIfNeeded();
+	}
+
+	/**
+	 * Appends encoded journal entries to the end of the file and syncs them once.
+	 */
+	private static void appendBatch(ByteArrayOutputStream batch) throws IOException {
+		ByteBuffer entries = ByteBuffer.wrap(batch.toByteArray());
+		while (entries.hasRemaining())
+			channel.write(entries, endOfIndex + entries.position());
+		SyncScheduler.sync(channel);
+		endOfIndex += entries.capacity();
+	}
+
+	/**
+	 * Applies a journal entry to the in-memory index.
+	 */
+	private static void apply(byte type, String tagName, int ideaId) {
+		SearchCache.invalidate();
+		IdBitmap ideas = postings.get(tagName);
+		if (type == ENTRY_ADD) {
+			if (ideas == null) {
+				ideas = new IdBitmap();
+				postings.put(tagName, ideas);
+				tagCreated(tagName);
+			}
+			ideas.add(ideaId);
+		} else if (ideas != null) {
+			ideas.remove(ideaId);
+			if (ideas.isEmpty()) {
+				postings.remove(tagName);
+				tagDropped(tagName);
+			}
+		}
+	}
+
+	/**
+	 * Gives a new tag a number and adds its id to <code>tagGrams</code>.
+	 */
+	private static void tagCreated(String tagName) {
+		int number;
+		if (freeNumbers.isEmpty()) {
+			number = numberedTags.size();
+			numberedTags.add(tagName);
+		} else {
+			number = freeNumbers.remove(freeNumbers.size() - 1);
+			numberedTags.set(number, tagName);
+		}
+		tagNumbers.put(tagName, number);
+		tagGrams.put(number, tagName);
+		tagTree.add(tagName);
+	}
+
+	/**
+	 * Removes the id of a tag which no longer exists from <code>tagGrams</code> and frees its number.
+	 */
+	private static void tagDropped(String tagName) {
+		Integer number = tagNumbers.remove(tagName);
+		if (number == null)
+			return;
+		tagGrams.remove(number);
+		tagTree.remove(tagName);
+		numberedTags.set(number, null);
+		freeNumbers.add(number);
+	}
+
+	/**
+	 * Returns the bytes of a journal entry, prefixed by its length and followed by
+	 * a CRC32 checksum of everything between the two.
+	 */
+	private static byte[] encodeEntry(byte type, String tagName, int ideaId) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(0);
+		out.writeByte(type);
+		out.writeUTF(tagName);
+		writeVarInt(out, ideaId);
+		out.writeInt(0);
+		out.flush();
+
+		byte[] entry = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(entry, 2, entry.length - 6);
+		ByteBuffer.wrap(entry).putShort(0, (short) (entry.length - 2)).putInt(entry.length - 4, (int) crc.getValue());
+		return entry;
+	}
+
+	/**
+	 * Rewrites the file if the journal has grown larger than the compact section.
+	 */
+	private static void rewriteIfNeeded() throws IOException {
+		if (journalEntries > REWRITE_THRESHOLD && journalEntries > compactPostings)
+			rewrite();
+	}
+
+	/**
+	 * Reads the entire file and rebuilds the in-memory index from the compact
+	 * section and the journal.
+	 *
+	 * @return the offset after the last complete journal entry with a valid checksum
+	 */
+	private static long read() throws IOException {
+		ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+		while (contents.hasRemaining()) {
+			if (channel.read(contents, contents.position()) < 0)
+				throw new EOFException();
+		}
+		contents.flip();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents.array()));
+		if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION)
+			throw new IOException("unrecognized tag index " + getIndexFile());
+		long journalStart = in.readLong();
+
+		int tagCount = in.readInt();
+		for (int i = 0; i < tagCount; i++) {
+			String tagName = in.readUTF();
+			int count = readVarInt(in);
+			IdBitmap ideas = new IdBitmap();
+			int id = 0;
+			for (int j = 0; j < count; j++) {
+				id += readVarInt(in);
+				ideas.add(id);
+			}
+			if (postings.put(tagName, ideas) == null)
+				tagCreated(tagName);
+			compactPostings += count;
+		}
+
+		//A torn or damaged entry ends the journal, along with anything after it
+		CRC32 crc = new CRC32();
+		contents.position((int) journalStart);
+		while (contents.remaining() >= 2) {
+			int start = contents.position();
+			int length = contents.getShort() & 0xFFFF;
+			if (length <= 4 || length > contents.remaining()) {
+				contents.position(start);
+				break;
+			}
+			crc.reset();
+			crc.update(contents.array(), contents.position(), length - 4);
+			if ((int) crc.getValue() != contents.getInt(contents.position() + length - 4)) {
+				contents.position(start);
+				break;
+			}
+
+			in = new DataInputStream(new ByteArrayInputStream(contents.array(), contents.position(), length - 4));
+			try {
+				byte type = in.readByte();
+				String tagName = in.readUTF();
+				int ideaId = readVarInt(in);
+				apply(type, tagName, ideaId);
+				journalEntries++;
+			} catch (EOFException eof) {
+				contents.position(start);
+				break;
+			}
+			contents.position(contents.position() + length);
+		}
+
+		return contents.position();
+	}
+
+	/**
+	 * Writes the in-memory index to a new file as a compact section with an empty
+	 * journal, then replaces the old file with it. Ideas which no longer exist in
+	 * {@link NameIndex} are dropped from each tag.
+	 */
+	private static void rewrite() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(INDEX_MAGIC);
+		out.writeInt(INDEX_VERSION);
+		out.writeLong(0);
+
+		TreeMap<String, IdBitmap> livePostings = new TreeMap<String, IdBitmap>();
+		int totalPostings = 0;
+		for (Map.Entry<String, IdBitmap> entry:postings.entrySet()) {
+			IdBitmap liveIdeas = new IdBitmap();
+			for (int ideaId:entry.getValue().toArray()) {
+				if (NameIndex.getName(ideaId) != null)
+					liveIdeas.add(ideaId);
+			}
+			if (!liveIdeas.isEmpty())
+				livePostings.put(entry.getKey(), liveIdeas);
+		}
+		List<String> droppedTags = new ArrayList<String>();
+		for (String tagName:postings.keySet()) {
+			if (!livePostings.containsKey(tagName))
+				droppedTags.add(tagName);
+		}
+
+		out.writeInt(livePostings.size());
+		for (Map.Entry<String, IdBitmap> entry:livePostings.entrySet()) {
+			int[] ideaIds = entry.getValue().toArray();
+			out.writeUTF(entry.getKey());
+			writeVarInt(out, ideaIds.length);
+			int previous = 0;
+			for (int ideaId:ideaIds) {
+				writeVarInt(out, ideaId - previous);
+				previous = ideaId;
+			}
+			totalPostings += ideaIds.length;
+		}
+		out.flush();
+
+		ByteBuffer contents = ByteBuffer.wrap(bytes.toByteArray());
+		contents.putLong(8, contents.capacity());
+
+		File indexFile = getIndexFile();
+		if (channel != null)
+			channel.close();
+		try {
+			AtomicFile.write(indexFile, contents.array());
+		} finally {
+			channel = new RandomAccessFile(indexFile, "rw").getChannel();
+		}
+
+		postings = livePostings;
+		for (String tagName:droppedTags)
+			tagDropped(tagName);
+		endOfIndex = contents.capacity();
+		journalEntries = 0;
+		compactPostings = totalPostings;
+	}
+
+	/**
+	 * Imports tags which were saved by previous versions of the application as individual
+	 * XML files in the <code>config/tags</code> directory. Ideas which cannot be found in
+	 * {@link NameIndex} are skipped.
+	 */
+	private static void importLegacyTags() {
+		File directory = new File(Data.getDefaultDirectory() + "/Ideabook/config/tags");
+		File[] listOfTags = directory.listFiles();
+		if (listOfTags == null)
+			return;
+
+		for (File f:listOfTags) {
+			String fileName = f.getName();
+			if (!fileName.endsWith(".tag"))
+				continue;
+
+			String tagName = fileName.substring(0, fileName.lastIndexOf("."));
+			Tag legacyTag = Tag.loadLegacyTag(f, tagName);
+			for (int ideaId:legacyTag.getIdeaIds().toArray())
+				apply(ENTRY_ADD, tagName, ideaId);
+		}
+	}
+
+	/**
+	 * Writes an unsigned integer using seven bits per byte, with the high bit set on
+	 * every byte except the last.
+	 */
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Reads an unsigned integer written by {@link #writeVarInt(DataOutputStream, int)}.
+	 */
+	static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
@@ -4,9 +4,10 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -26,6 +27,7 @@ import ca.josephroque.idea.Text;
 import ca.josephroque.idea.config.Category;
 import ca.josephroque.idea.config.Idea;
 import ca.josephroque.idea.config.Tag;
+import ca.josephroque.idea.io.WriteQueue;
 
 /**
  * <code>RefreshablePanel</code> which displays an idea and its contents
@@ -44,6 +46,12 @@ public class EditPanel extends RefreshablePanel {
 	private static final String UNAVAILABLE = "Information Unavailable";
 	/** The idea being edited by the user */
 	private static Idea currentIdea = null;
+	/**
+	 * The most recently saved version of the idea being edited. Replaced whenever
+	 * a different idea is edited, and shared with saves which have not finished
+	 * so that each save starts from the one before it.
+	 */
+	private static AtomicReference<Idea> savedIdea = new AtomicReference<Idea>();
 	
 	/** Input field for the idea's name */
 	private JTextField textFieldIdeaName = null;
@@ -143,7 +151,9 @@ public class EditPanel extends RefreshablePanel {
 	/**
 	 * Called by the pressing of a "Save Changes" button. Checks to make sure
 	 * the input is valid and prompts the user if it is not. Then saves the changes
-	 * to the file which represents the idea that was originally loaded.
+	 * to the idea that was originally loaded in the background.
+	 * 
+	 * @see ca.josephroque.idea.io.WriteQueue
 	 */
 	private void saveIdea() {
 		if (textFieldIdeaName.getText() == null || textFieldIdeaName.getText().length() == 0) {
@@ -163,39 +173,49 @@ public class EditPanel extends RefreshablePanel {
 				return;
 		}
 		
-		Idea newIdea = new Idea(textFieldIdeaName.getText(),
+		final Idea newIdea = new Idea(textFieldIdeaName.getText(),
 								comboIdeaCategory.getItemAt(comboIdeaCategory.getSelectedIndex()), 
 								textAreaIdeaBody.getText(),
 								textFieldIdeaTags.getText().split(", *"),
 								currentIdea.getDateCreated(),
 								new Date());
+		final AtomicReference<Idea> session = savedIdea;
 		
-		if (Idea.editIdea(currentIdea, newIdea)) {
-			List<String> oldIdeaTags = currentIdea.getTags();
-			List<String> newIdeaTags = newIdea.getTags();
-			Iterator<String> tagIterator = null;
-			String curTag = null;
-			
-			tagIterator = currentIdea.getTagsIterator();
-			while (tagIterator.hasNext()) {
-				curTag = tagIterator.next();
-				if (!newIdeaTags.contains(curTag)) {
-					Tag.removeIdeaFromTag(curTag, newIdea);
+		WriteQueue.submit(session, new WriteQueue.Task() {
+			protected boolean write() {
+				Idea oldIdea = session.get();
+				if (!Idea.editIdea(oldIdea, newIdea))
+					return false;
+				
+				List<String> oldIdeaTags = oldIdea.getTags();
+				List<String> newIdeaTags = newIdea.getTags();
+				List<String> tagsToAdd = new ArrayList<String>();
+				List<String> tagsToRemove = new ArrayList<String>();
+				
+				for (String curTag:oldIdeaTags) {
+					if (!newIdeaTags.contains(curTag))
+						tagsToRemove.add(curTag);
+				}
+				for (String curTag:newIdeaTags) {
+					if (!oldIdeaTags.contains(curTag))
+						tagsToAdd.add(curTag);
 				}
+				Tag.updateIdeaTags(newIdea, tagsToAdd, tagsToRemove);
+				session.set(newIdea);
+				return true;
 			}
 			
-			tagIterator = newIdea.getTagsIterator();
-			while (tagIterator.hasNext()) {
-				curTag = tagIterator.next();
-				if (!oldIdeaTags.contains(curTag)) {
-					Tag.addIdeaToTag(curTag, newIdea);
+			protected void done(boolean success) {
+				//Only the last of several saves which were written together reports back
+				if (!success || session.get() != newIdea)
+					return;
+				if (savedIdea == session) {
+					currentIdea = newIdea;
+					refresh();
 				}
+				Notification.queueInformationNotification("This idea has been successfully saved");
 			}
-			
-			currentIdea = newIdea;
-			refresh();
-			Notification.queueInformationNotification("This idea has been successfully saved");
-		}
+		});
 	}
 	
 	/**
@@ -204,6 +224,7 @@ public class EditPanel extends RefreshablePanel {
 	 */
 	public static void setCurrentIdea(Idea idea) {
 		currentIdea = idea;
+		savedIdea = new AtomicReference<Idea>(idea);
 	}
 
 	/**
@@ -6,14 +6,13 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.DefaultComboBoxModel;
-import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
@@ -30,8 +29,14 @@ import javax.swing.event.ListSelectionListener;
 import ca.josephroque.idea.Assets;
 import ca.josephroque.idea.Text;
 import ca.josephroque.idea.config.Category;
+import ca.josephroque.idea.config.DateIndex;
 import ca.josephroque.idea.config.Idea;
-import ca.josephroque.idea.config.Tag;
+import ca.josephroque.idea.config.IdeaCache;
+import ca.josephroque.idea.config.NameIndex;
+import ca.josephroque.idea.config.QueryPlan;
+import ca.josephroque.idea.config.Relevance;
+import ca.josephroque.idea.search.SearchQuery;
+import ca.josephroque.idea.search.SearchQueue;
 
 /**
  * <code>RefreshablePanel</code> which provides methods for the
@@ -48,6 +53,14 @@ public class SearchPanel extends RefreshablePanel {
 	private static final long serialVersionUID = 1L;
 	/** String which represents a search of ideas in "Any Category" */
 	private static final String STR_CATEGORY_ALL = "Any Category";
+	/** String which represents ordering the results by relevance */
+	private static final String STR_SORT_RELEVANCE = "Most Relevant";
+	/** String which represents ordering the results by the date they were last modified */
+	private static final String STR_SORT_MODIFIED = "Recently Modified";
+	/** Number of results which are ordered by relevance, before the rest are listed alphabetically */
+	private static final int MAX_RANKED_RESULTS = 50;
+	/** Character repeated to make the widest name a result can have, which sets the size of every row */
+	private static final char PROTOTYPE_CHAR = 'W';
 	
 	/** Button which will open the currently selected idea in the view panel */
 	private JButton btnViewIdea = null;
@@ -59,21 +72,15 @@ public class SearchPanel extends RefreshablePanel {
 	private JTextField textSearchTerms = null;
 	/** Drop down menu of all the existing categories */
 	private JComboBox<String> comboCategory = null;
+	/** Drop down menu of the orders the results can be listed in */
+	private JComboBox<String> comboSort = null;
 	/** A list model for a <code>JList</code> which shows the results of the current search */
-	private DefaultListModel<String> listSearchResults = null;
+	private SearchResultListModel listSearchResults = null;
 	
-	/** A String which stores the user's most recent search terms */
-	private String lastSearch = "";
 	/** The currently selected index of the list of ideas */
 	private int curSelectedIndex = -1;
-	/** A set of results which match the user's search terms */
-	private TreeSet<String> searchResultsTree = null;
-	/** A set of all the idea names previously created by the user */
-	private TreeSet<String> ideaNameTree = null;
-	/** A set of all the categories which correspond to each idea name */
-	private TreeMap<String, String> ideaCategoryTree = null;
-	/** A set of all the tags the user has tagged their ideas with */
-	private TreeSet<Tag> tagTree = null;
+	/** True while the panel is shown, so searches may be run */
+	private boolean isShown = false;
 	
 	/**
 	 * Initializes the panel and displays an input field for the user's
@@ -85,8 +92,6 @@ public class SearchPanel extends RefreshablePanel {
 		this.setLayout(new BorderLayout());
 		this.setBackground(Assets.backgroundPanelColor);
 		
-		searchResultsTree = new TreeSet<String>();
-		
 		JPanel innerPanel = new JPanel();
 		innerPanel.setLayout(new BoxLayout(innerPanel, BoxLayout.X_AXIS));
 		innerPanel.setBackground(Assets.backgroundPanelColor);
@@ -97,7 +102,7 @@ public class SearchPanel extends RefreshablePanel {
 		innerPanel.add(label);
 		
 		textSearchTerms = new JTextField();
-		textSearchTerms.setDocument(new Text.PatternDocument(Text.regex_IdeaName));
+		textSearchTerms.setDocument(new Text.PatternDocument(Text.regex_SearchTerms));
 		textSearchTerms.setFont(Assets.fontRegencie.deriveFont(Assets.FONT_SIZE_DEFAULT));
 		textSearchTerms.getDocument().addDocumentListener(new DocumentListener() {
 			public void removeUpdate(DocumentEvent event) {
@@ -115,17 +120,32 @@ public class SearchPanel extends RefreshablePanel {
 		comboCategory.addItemListener(new ItemListener() {
 			public void itemStateChanged(ItemEvent event) {
 				if (event.getStateChange() == ItemEvent.SELECTED) {
-					updateSearchResults();
+					updateSearchResults(0);
 				}
 			}
 		});
 		innerPanel.add(Box.createRigidArea(new Dimension(5,0)));
 		innerPanel.add(comboCategory);
+		
+		comboSort = new JComboBox<String>(new String[]{STR_SORT_RELEVANCE, STR_SORT_MODIFIED});
+		comboSort.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent event) {
+				if (event.getStateChange() == ItemEvent.SELECTED) {
+					updateSearchResults(0);
+				}
+			}
+		});
+		innerPanel.add(Box.createRigidArea(new Dimension(5,0)));
+		innerPanel.add(comboSort);
 		this.add(innerPanel, BorderLayout.NORTH);
 		
-		listSearchResults = new DefaultListModel<String>();
+		listSearchResults = new SearchResultListModel();
 		JList<String> list = new JList<String>(listSearchResults);
 		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		//Every row is the size of the longest possible name, so the list never measures the rows themselves
+		char[] prototypeName = new char[Text.IDEA_NAME_MAXLENGTH];
+		Arrays.fill(prototypeName, PROTOTYPE_CHAR);
+		list.setPrototypeCellValue(new String(prototypeName));
 		ListSelectionModel lsm = list.getSelectionModel();
 		lsm.addListSelectionListener(new ListSelectionListener() {
 			public void valueChanged(ListSelectionEvent e) {
@@ -194,9 +214,13 @@ public class SearchPanel extends RefreshablePanel {
 			return;
 		}
 		
-		String ideaName = listSearchResults.getElementAt(curSelectedIndex);
-		String ideaCategory = ideaCategoryTree.get(ideaName);
-		Idea loadedIdea = Idea.loadIdea(ideaName, ideaCategory);
+		int ideaId = listSearchResults.getIdeaId(curSelectedIndex);
+		String ideaName = NameIndex.getName(ideaId);
+		if (ideaName == null) {
+			setButtonsEnabled(false);
+			return;
+		}
+		Idea loadedIdea = IdeaCache.load(ideaName, NameIndex.getCategory(ideaId));
 		ViewPanel.setCurrentIdea(loadedIdea);
 		PanelManager.show(PanelManager.MENU_VIEW);
 	}
@@ -211,9 +235,13 @@ public class SearchPanel extends RefreshablePanel {
 			return;
 		}
 		
-		String ideaName = listSearchResults.getElementAt(curSelectedIndex);
-		String ideaCategory = ideaCategoryTree.get(ideaName);
-		Idea loadedIdea = Idea.loadIdea(ideaName, ideaCategory);
+		int ideaId = listSearchResults.getIdeaId(curSelectedIndex);
+		String ideaName = NameIndex.getName(ideaId);
+		if (ideaName == null) {
+			setButtonsEnabled(false);
+			return;
+		}
+		Idea loadedIdea = IdeaCache.load(ideaName, NameIndex.getCategory(ideaId));
 		EditPanel.setCurrentIdea(loadedIdea);
 		PanelManager.show(PanelManager.MENU_EDIT);
 	}
@@ -234,96 +262,134 @@ public class SearchPanel extends RefreshablePanel {
 	/**
 	 * Checks the contents of <code>textSearchTerms</code> and uses them
 	 * to compare to the names of existing ideas and tags, building a list
-	 * which matches the user's search. The results of the search are the names
-	 * of all found ideas stored in <code>searchResultsTree</code> and displayed
-	 * in the <code>JList</code> which utilizes <code>listSearchResults</code>.
+	 * which matches the user's search. The results of the search are the ids
+	 * of all found ideas, displayed in the <code>JList</code> which utilizes
+	 * <code>listSearchResults</code>.
+	 * <p>
+	 * The search runs in the background through {@link ca.josephroque.idea.search.SearchQueue}
+	 * once the user stops typing, and its results are only shown if no newer
+	 * search has been started.
 	 */
 	private void updateSearchResults() {
-		Iterator<String> stringIterator = null;
-		String searchTerms = textSearchTerms.getText().toUpperCase();
-		String searchCategory = comboCategory.getItemAt(comboCategory.getSelectedIndex());
-		String curIdea = null;
-		String curIdeaUpperCase = null;
-		Tag curTag = null;
-		
-		boolean searchAllCategories = (searchCategory == STR_CATEGORY_ALL);
+		updateSearchResults(SearchQueue.DEBOUNCE_DELAY);
+	}
+	
+	/**
+	 * Starts a search for the contents of <code>textSearchTerms</code> after the given delay.
+	 * 
+	 * @param delayMillis the time to wait before searching, in milliseconds
+	 * @see #updateSearchResults()
+	 */
+	private void updateSearchResults(long delayMillis) {
+		final String searchTerms = textSearchTerms.getText();
+		final String searchCategory = comboCategory.getItemAt(comboCategory.getSelectedIndex());
+		final boolean sortByDate = STR_SORT_MODIFIED.equals(comboSort.getSelectedItem());
+		if (!isShown)
+			return;
 		
-		if (searchTerms == null || searchTerms.length() == 0) {
-			searchResultsTree.clear();
-			stringIterator = ideaNameTree.iterator();
-			while (stringIterator.hasNext()) {
-				curIdea = stringIterator.next();
-				if (searchAllCategories || ideaCategoryTree.get(curIdea).equalsIgnoreCase(searchCategory))
-					searchResultsTree.add(curIdea);
+		SearchQueue.submit(new SearchQueue.Query<int[]>() {
+			protected int[] search() {
+				return findSearchResults(this, searchTerms, searchCategory, sortByDate);
 			}
-		} else {
-			boolean expandedLastSearch = searchTerms.startsWith(lastSearch);
-			lastSearch = searchTerms;
-			
-			if (expandedLastSearch) {
-				stringIterator = searchResultsTree.iterator();
-				while (stringIterator.hasNext()) {
-					curIdea = stringIterator.next().toUpperCase();
-					if (!curIdea.contains(searchTerms))
-						stringIterator.remove();
-				}
-				
-				Iterator<Tag> tagIterator = tagTree.iterator();
-				while (tagIterator.hasNext()) {
-					curTag = tagIterator.next();
-					if (curTag.getID().toUpperCase().contains(searchTerms)) {
-						stringIterator = curTag.ideaIterator();
-						while (stringIterator.hasNext())
-							searchResultsTree.add(stringIterator.next());
-					}
-				}
-			} else {
-				searchResultsTree.clear();
-				stringIterator = ideaNameTree.iterator();
-				Iterator<Tag> tagIterator = tagTree.iterator();
-				
-				while (stringIterator.hasNext()) {
-					curIdea = stringIterator.next();
-					curIdeaUpperCase = curIdea.toUpperCase();
-					if (curIdeaUpperCase.contains(searchTerms) && (searchAllCategories || ideaCategoryTree.get(curIdea).equalsIgnoreCase(searchCategory)))
-						searchResultsTree.add(curIdea);
-				}
-				
-				while (tagIterator.hasNext()) {
-					curTag = tagIterator.next();
-					if (curTag.getID().toUpperCase().contains(searchTerms)) {
-						stringIterator = curTag.ideaIterator();
-						while (stringIterator.hasNext())
-							searchResultsTree.add(stringIterator.next());
-					}
-				}
+			protected void publish(int[] results) {
+				showSearchResults(results);
 			}
-		}
+		}, delayMillis);
+	}
+	
+	/**
+	 * Finds the ideas which match the search terms, in the category being searched.
+	 * The terms are parsed as a {@link ca.josephroque.idea.search.SearchQuery} and run
+	 * through a {@link ca.josephroque.idea.config.QueryPlan}. The
+	 * <code>MAX_RANKED_RESULTS</code> most relevant ideas are listed first, as ordered
+	 * by {@link ca.josephroque.idea.config.Relevance}, followed by the rest in alphabetical
+	 * order. If the results are sorted by date, they are instead listed from the most to
+	 * the least recently modified. Only ids are returned, so listing every idea in a large
+	 * library never builds a name for each of them. Called on the search thread.
+	 * 
+	 * @param query the search being run, which is abandoned once it is superseded
+	 * @param searchTerms the text to search for
+	 * @param searchCategory the category to search, or <code>STR_CATEGORY_ALL</code>
+	 * @param sortByDate true to list the results by the date they were last modified
+	 * @return the ids of the matching ideas, in the order they should be shown
+	 */
+	private static int[] findSearchResults(SearchQueue.Query<?> query, String searchTerms, String searchCategory,
+			boolean sortByDate) {
+		BitSet categoryIds;
+		if (STR_CATEGORY_ALL.equals(searchCategory))
+			categoryIds = Category.getIdeaIds(null);
+		else if (searchCategory != null)
+			categoryIds = Category.getIdeaIds(searchCategory);
+		else
+			categoryIds = new BitSet();
 		
-		stringIterator = searchResultsTree.iterator();
-		listSearchResults.clear();
-		while (stringIterator.hasNext())
-			listSearchResults.addElement(stringIterator.next());
+		if (searchTerms == null || searchTerms.length() == 0)
+			return sortByDate ? findIdsByDate(categoryIds):NameIndex.sortByName(categoryIds);
+		
+		SearchQuery parsedQuery = SearchQuery.parse(searchTerms, System.currentTimeMillis());
+		BitSet matches = QueryPlan.compile(parsedQuery).execute(query);
+		if (matches == null)
+			return new int[0];
+		
+		categoryIds.and(matches);
+		if (sortByDate)
+			return findIdsByDate(categoryIds);
+		int[] ideaIds = new int[categoryIds.cardinality()];
+		int ideaCount = 0;
+		for (int ideaId = categoryIds.nextSetBit(0); ideaId >= 0; ideaId = categoryIds.nextSetBit(ideaId + 1))
+			ideaIds[ideaCount++] = ideaId;
+		if (query.isSuperseded())
+			return new int[0];
+		
+		int[] rankedIds = Relevance.rank(parsedQuery.getSearchText(), ideaIds, MAX_RANKED_RESULTS);
+		for (int ideaId:rankedIds)
+			categoryIds.clear(ideaId);
+		return concat(rankedIds, NameIndex.sortByName(categoryIds));
+	}
+	
+	/**
+	 * Returns the given ideas from the most to the least recently modified, as ordered by
+	 * {@link ca.josephroque.idea.config.DateIndex}. Ideas without a date are listed last,
+	 * in alphabetical order.
+	 * 
+	 * @param ideaIds the ids of the ideas
+	 * @return the ids of the ideas, in the order they should be shown
+	 */
+	private static int[] findIdsByDate(BitSet ideaIds) {
+		int[] recentIds = DateIndex.getMostRecentlyModified(ideaIds, ideaIds.cardinality());
+		for (int ideaId:recentIds)
+			ideaIds.clear(ideaId);
+		return concat(recentIds, NameIndex.sortByName(ideaIds));
+	}
+	
+	/**
+	 * Returns the ids of <code>first</code> followed by the ids of <code>second</code>.
+	 */
+	private static int[] concat(int[] first, int[] second) {
+		int[] ids = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, ids, first.length, second.length);
+		return ids;
+	}
+	
+	/**
+	 * Displays the results of the latest search in <code>listSearchResults</code>.
+	 * 
+	 * @param results the ids of the ideas found, in the order they should be shown
+	 */
+	private void showSearchResults(int[] results) {
+		listSearchResults.setResults(results);
 	}
 
 	/**
-	 * Clears the search results and loads all the names of existing ideas
-	 * and tags into <code>ideaNameTree</code> and <code>tagTree</code>
-	 * respectively.
+	 * Clears the search terms and lists every idea. Names are found through
+	 * {@link ca.josephroque.idea.config.NameIndex} and tags through
+	 * {@link ca.josephroque.idea.config.TagIndex}, so nothing is loaded here.
 	 */
 	@Override
 	public void refresh() {
 		Iterator<String> categoryIterator = Category.getCategoryNamesIterator();
 		
-		ideaNameTree = new TreeSet<String>();
-		ideaCategoryTree = new TreeMap<String, String>();
-		Idea.loadAllIdeaNames(ideaNameTree, ideaCategoryTree);
-		
-		tagTree = new TreeSet<Tag>();
-		Tag.loadAllTags(tagTree);
-		
-		searchResultsTree = new TreeSet<String>();
-		
+		isShown = true;
 		textSearchTerms.setText(null);
 		
 		comboCategory.removeAllItems();
@@ -335,7 +401,7 @@ public class SearchPanel extends RefreshablePanel {
 		comboCategory.validate();
 		
 		setButtonsEnabled(false);
-		updateSearchResults();
+		updateSearchResults(0);
 	}
 	
 	/**
@@ -344,10 +410,8 @@ public class SearchPanel extends RefreshablePanel {
 	 */
 	@Override
 	public void close() {
-		ideaNameTree = null;
-		ideaCategoryTree = null;
-		tagTree = null;
-		searchResultsTree = null;
+		SearchQueue.cancel();
+		isShown = false;
 		listSearchResults.clear();
 	}
 	
@@ -0,0 +1,223 @@
+package ca.josephroque.idea.gui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.AbstractListModel;
+
+import ca.josephroque.idea.config.NameIndex;
+
+/**
+ * <code>ListModel</code> which holds the ideas found by a search. The model
+ * only keeps the ids of the ideas, and their names are looked up in
+ * {@link NameIndex} a page at a time as the list asks for the rows in view,
+ * so a search which matches every idea in a large library shows its results
+ * without building a name for each of them.
+ * <p>
+ * When the results are replaced, only the ranges of ideas which were removed
+ * or added are reported to the list, one event for each range, so a new search
+ * which changes few results redraws little of the list. If the old and new
+ * ideas are both ordered by name, every range which differs is found. Otherwise,
+ * the ideas between the longest common start and end of the two are replaced.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class SearchResultListModel extends AbstractListModel<String> {
+
+	/** Default serialVersionUID */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Most ranges which will be reported separately. Results which differ
+	 * by more ranges are reported as a single replaced range
+	 */
+	private static final int MAX_CHANGED_RANGES = 8;
+	/** Number of names looked up at once */
+	private static final int PAGE_SIZE = 128;
+	/** Most pages of names which are kept, evicting the least recently shown */
+	private static final int MAX_CACHED_PAGES = 16;
+
+	/** The ids of the ideas in the list, in the order they are shown */
+	private int[] results = new int[0];
+	/** The names of the pages of <code>results</code> shown recently, keyed by page number */
+	private final Map<Integer, String[]> pages = new LinkedHashMap<Integer, String[]>(MAX_CACHED_PAGES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+			return size() > MAX_CACHED_PAGES;
+		}
+	};
+
+	@Override
+	public int getSize() {
+		return results.length;
+	}
+
+	@Override
+	public String getElementAt(int index) {
+		int page = index / PAGE_SIZE;
+		String[] names = pages.get(page);
+		if (names == null) {
+			int start = page * PAGE_SIZE;
+			names = NameIndex.getNames(results, start, Math.min(start + PAGE_SIZE, results.length));
+			pages.put(page, names);
+		}
+		return names[index % PAGE_SIZE];
+	}
+
+	/**
+	 * Returns the id of the idea at the given position in the list.
+	 *
+	 * @param index the position of the idea
+	 * @return the id assigned to the idea by {@link NameIndex}
+	 */
+	public int getIdeaId(int index) {
+		return results[index];
+	}
+
+	/**
+	 * Replaces the ideas in the list, notifying listeners of the ranges
+	 * which were removed and added.
+	 *
+	 * @param newResults the ids of the new ideas. The array must not be modified afterwards
+	 */
+	public void setResults(int[] newResults) {
+		int[] oldResults = results;
+		int[] nameOrder = NameIndex.getNameOrder();
+		if (!isSorted(oldResults, nameOrder) || !isSorted(newResults, nameOrder)
+				|| countChangedRanges(oldResults, newResults, nameOrder) > MAX_CHANGED_RANGES) {
+			replaceChangedRange(oldResults, newResults);
+			return;
+		}
+
+		//While the ranges are reported, the list holds the new ideas before
+		//position j, followed by the old ideas from position i
+		int i = 0;
+		int j = 0;
+		while (i < oldResults.length || j < newResults.length) {
+			if (j == newResults.length || (i < oldResults.length && nameOrder[oldResults[i]] < nameOrder[newResults[j]])) {
+				int removed = i;
+				while (i < oldResults.length && (j == newResults.length || nameOrder[oldResults[i]] < nameOrder[newResults[j]]))
+					i++;
+				setContents(merge(newResults, j, oldResults, i));
+				fireIntervalRemoved(this, j, j + i - removed - 1);
+			} else if (i == oldResults.length || nameOrder[oldResults[i]] > nameOrder[newResults[j]]) {
+				int added = j;
+				while (j < newResults.length && (i == oldResults.length || nameOrder[oldResults[i]] > nameOrder[newResults[j]]))
+					j++;
+				setContents(merge(newResults, j, oldResults, i));
+				fireIntervalAdded(this, added, j - 1);
+			} else {
+				i++;
+				j++;
+			}
+		}
+		setContents(newResults);
+	}
+
+	/**
+	 * Removes every idea from the list.
+	 */
+	public void clear() {
+		setResults(new int[0]);
+	}
+
+	/**
+	 * Sets the ideas in the list without notifying listeners, forgetting the names
+	 * which were looked up, since their positions may have changed.
+	 *
+	 * @param contents the ids of the ideas in the list
+	 */
+	private void setContents(int[] contents) {
+		results = contents;
+		pages.clear();
+	}
+
+	/**
+	 * Replaces the ideas between the longest common start and the longest common
+	 * end of the old and new ideas, reporting one removed and one added range.
+	 *
+	 * @param oldResults the ideas in the list
+	 * @param newResults the new ideas
+	 */
+	private void replaceChangedRange(int[] oldResults, int[] newResults) {
+		int shorterLength = Math.min(oldResults.length, newResults.length);
+		int start = 0;
+		while (start < shorterLength && oldResults[start] == newResults[start])
+			start++;
+		int end = 0;
+		while (end < shorterLength - start
+				&& oldResults[oldResults.length - end - 1] == newResults[newResults.length - end - 1])
+			end++;
+
+		if (oldResults.length - end > start) {
+			setContents(merge(newResults, start, oldResults, oldResults.length - end));
+			fireIntervalRemoved(this, start, oldResults.length - end - 1);
+		}
+		setContents(newResults);
+		if (newResults.length - end > start)
+			fireIntervalAdded(this, start, newResults.length - end - 1);
+	}
+
+	/**
+	 * Returns true if the ideas are in ascending order of their names.
+	 *
+	 * @param ideaIds the ids of the ideas to check
+	 * @param nameOrder the position of each id when every name is sorted
+	 * @return true if each idea is in use and its name is greater than the one before it
+	 */
+	private static boolean isSorted(int[] ideaIds, int[] nameOrder) {
+		int previous = -1;
+		for (int id:ideaIds) {
+			if (id >= nameOrder.length || nameOrder[id] <= previous)
+				return false;
+			previous = nameOrder[id];
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the ranges of ideas which were removed or added between two sets of results.
+	 *
+	 * @param oldResults the previous ideas, in ascending order of their names
+	 * @param newResults the new ideas, in ascending order of their names
+	 * @param nameOrder the position of each id when every name is sorted
+	 * @return the number of ranges which differ
+	 */
+	private static int countChangedRanges(int[] oldResults, int[] newResults, int[] nameOrder) {
+		int ranges = 0;
+		int i = 0;
+		int j = 0;
+		int lastChange = 0;
+		while (i < oldResults.length || j < newResults.length) {
+			int comparison;
+			if (j == newResults.length)
+				comparison = -1;
+			else if (i == oldResults.length)
+				comparison = 1;
+			else
+				comparison = Integer.compare(nameOrder[oldResults[i]], nameOrder[newResults[j]]);
+
+			if (comparison != lastChange && comparison != 0)
+				ranges++;
+			lastChange = comparison;
+			if (comparison <= 0)
+				i++;
+			if (comparison >= 0)
+				j++;
+		}
+		return ranges;
+	}
+
+	/**
+	 * Returns the first <code>newLength</code> ids of <code>newResults</code>
+	 * followed by the ids of <code>oldResults</code> from <code>oldOffset</code>.
+	 */
+	private static int[] merge(int[] newResults, int newLength, int[] oldResults, int oldOffset) {
+		int[] merged = new int[newLength + oldResults.length - oldOffset];
+		System.arraycopy(newResults, 0, merged, 0, newLength);
+		System.arraycopy(oldResults, oldOffset, merged, newLength, oldResults.length - oldOffset);
+		return merged;
+	}
+}
@@ -1,5 +1,16 @@
 package ca.josephroque.idea.gui;
 
+import java.awt.BorderLayout;
+
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import ca.josephroque.idea.Assets;
+import ca.josephroque.idea.config.IdeaCache;
+import ca.josephroque.idea.config.IdeaStore;
+
 /**
  * <code>RefreshablePanel</code> which allows a user to
  * alter different settings in the application.
@@ -11,20 +22,58 @@ public class SettingsPanel extends RefreshablePanel {
 
 	/** Default serialVersionUID */
 	private static final long serialVersionUID = 1L;
+	
+	/** Displays how much space the user's ideas take up */
+	private JLabel labelStorage;
+	/** Displays how often opened ideas were found in {@link IdeaCache} */
+	private JLabel labelCache;
 
 	/**
 	 * Default constructor.
 	 */
 	public SettingsPanel() {
 		super();
+		this.setLayout(new BorderLayout());
+		this.setBackground(Assets.backgroundPanelColor);
+		
+		JPanel innerPanel = new JPanel();
+		innerPanel.setBackground(Assets.backgroundPanelColor);
+		innerPanel.setLayout(new BoxLayout(innerPanel, BoxLayout.Y_AXIS));
+		
+		innerPanel.add(Box.createVerticalGlue());
+		
+		labelStorage = new JLabel();
+		labelStorage.setFont(Assets.fontCaviarDreams.deriveFont(Assets.FONT_SIZE_DEFAULT));
+		labelStorage.setAlignmentX(JLabel.CENTER_ALIGNMENT);
+		innerPanel.add(labelStorage);
+		
+		labelCache = new JLabel();
+		labelCache.setFont(Assets.fontCaviarDreams.deriveFont(Assets.FONT_SIZE_DEFAULT));
+		labelCache.setAlignmentX(JLabel.CENTER_ALIGNMENT);
+		innerPanel.add(labelCache);
+		
+		innerPanel.add(Box.createVerticalGlue());
+		this.add(innerPanel, BorderLayout.CENTER);
 	}
 
 	/**
-	 * Does nothing.
+	 * Updates the storage and cache statistics shown to the user.
 	 */
 	@Override
 	public void refresh() {
+		long rawBytes = IdeaStore.getRawPayloadBytes();
+		long storedBytes = IdeaStore.getStoredPayloadBytes();
+		String text = IdeaStore.size() + " ideas, " + formatBytes(storedBytes) + " on disk";
+		if (storedBytes > 0 && storedBytes < rawBytes)
+			text += String.format(" (%s uncompressed, %.1f:1)", formatBytes(rawBytes), (double) rawBytes / storedBytes);
+		labelStorage.setText(text);
 		
+		long hits = IdeaCache.getHitCount();
+		long loads = hits + IdeaCache.getMissCount();
+		text = IdeaCache.size() + " ideas cached";
+		if (loads > 0)
+			text += String.format(", %d of %d opened without reading the disk", hits, loads);
+		labelCache.setText(text);
 	}
 	
 	/**
@@ -42,4 +91,19 @@ public class SettingsPanel extends RefreshablePanel {
 	public void save() {
 		
 	}
+	
+	/**
+	 * Formats a number of bytes in the most appropriate unit.
+	 * 
+	 * @param bytes the number of bytes
+	 * @return <code>bytes</code> as a human readable string
+	 */
+	private static String formatBytes(long bytes) {
+		if (bytes < 1024)
+			return bytes + " B";
+		else if (bytes < 1024 * 1024)
+			return String.format("%.1f KB", bytes / 1024.0);
+		else
+			return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+	}
 }
@@ -8,9 +8,9 @@ import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Iterator;
+import java.io.OutputStream;
+import java.util.Collections;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -26,11 +26,6 @@ import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.border.EmptyBorder;
 
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
-
 import ca.josephroque.idea.Assets;
 import ca.josephroque.idea.Data;
 import ca.josephroque.idea.Ideabook;
@@ -39,6 +34,9 @@ import ca.josephroque.idea.config.Category;
 import ca.josephroque.idea.config.Idea;
 import ca.josephroque.idea.config.Tag;
 import ca.josephroque.idea.gui.components.IdeaCanvas;
+import ca.josephroque.idea.io.AtomicFile;
+import ca.josephroque.idea.io.WriteQueue;
+import ca.josephroque.idea.io.XmlWriter;
 
 /**
  * <code>RefreshablePanel</code> which the user can use to create
@@ -283,39 +281,21 @@ public class SubmitPanel extends RefreshablePanel {
 			directory = null;
 			
 			File saveFile = new File(Data.getDefaultDirectory() + "/Ideabook/config/submit.dat");
-			if (saveFile.exists())
-				saveFile.delete();
-			
-			Element dataElement = new Element("data");
-			Document doc = new Document(dataElement);
-			
-			Element content = new Element("content");
-			Element saveElement;
-			
-			if (saveIdeaName) {
-				saveElement = new Element("ideaname");
-				saveElement.setText(ideaNameText);
-				content.addContent(saveElement);
-			}
-			
-			if (saveIdeaTag) {
-				saveElement = new Element("ideatag");
-				saveElement.setText(ideaTagText);
-				content.addContent(saveElement);
-			}
-			
-			if (saveIdeaBody) {
-				saveElement = new Element("ideabody");
-				saveElement.setText(ideaBodyText);
-				content.addContent(saveElement);
-			}
 			
-			doc.getRootElement().addContent(content);
-			XMLOutputter xmlOutput = new XMLOutputter();
-			xmlOutput.setFormat(Format.getPrettyFormat());
+			final XmlWriter writer = XmlWriter.begin(false).startElement("data").startElement("content");
+			if (saveIdeaName)
+				writer.element("ideaname", ideaNameText);
+			if (saveIdeaTag)
+				writer.element("ideatag", ideaTagText);
+			if (saveIdeaBody)
+				writer.element("ideabody", ideaBodyText);
 			
 			try {
-				xmlOutput.output(doc, new FileWriter(saveFile));
+				AtomicFile.write(saveFile, new AtomicFile.Content() {
+					public void writeTo(OutputStream out) throws IOException {
+						writer.writeTo(out);
+					}
+				});
 			} catch (IOException io) {
 				Data.printErrorMessage(io);
 			}
@@ -396,19 +376,28 @@ public class SubmitPanel extends RefreshablePanel {
 	
 	/**
 	 * Attempts to create a new {@link ca.josephroque.idea.config.Idea} object from
-	 * the input provided by the user and save it to a file.
+	 * the input provided by the user and save it in the background.
 	 * 
 	 * @see ca.josephroque.idea.config.Idea#saveIdea(Idea)
+	 * @see ca.josephroque.idea.io.WriteQueue
 	 */
 	private void createNewIdea() {
-		Idea newIdea = new Idea(textIdeaName.getText(), comboCategory.getItemAt(comboCategory.getSelectedIndex()), textAreaIdeaBody.getText(), textIdeaTags.getText().split(", *"), new java.util.Date());
-		
-		if (Idea.saveIdea(newIdea)) {
-			Iterator<String> tags = newIdea.getTagsIterator();
-			while(tags.hasNext())
-				Tag.addIdeaToTag(tags.next(), newIdea);
-			PanelManager.show(PanelManager.MENU_MAIN);
-			Notification.queueInformationNotification("Success! New idea saved!");
-		}
+		final Idea newIdea = new Idea(textIdeaName.getText(), comboCategory.getItemAt(comboCategory.getSelectedIndex()), textAreaIdeaBody.getText(), textIdeaTags.getText().split(", *"), new java.util.Date());
+		
+		WriteQueue.submit("new idea: " + newIdea.getName().toUpperCase(), new WriteQueue.Task() {
+			protected boolean write() {
+				if (!Idea.saveIdea(newIdea))
+					return false;
+				Tag.updateIdeaTags(newIdea, newIdea.getTags(), Collections.<String>emptyList());
+				return true;
+			}
+			
+			protected void done(boolean success) {
+				if (success && PanelManager.getCurrentPanel() == PanelManager.MENU_SUBMIT) {
+					PanelManager.show(PanelManager.MENU_MAIN);
+					Notification.queueInformationNotification("Success! New idea saved!");
+				}
+			}
+		});
 	}
 }
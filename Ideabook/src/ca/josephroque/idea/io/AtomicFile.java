@@ -0,0 +1,102 @@
+package ca.josephroque.idea.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces the contents of files so that a crash never leaves a file
+ * truncated or half written.
+ * <p>
+ * New contents are streamed through a buffer into a temporary file beside the
+ * target, which is forced to the disk and then renamed over the target in a
+ * single step. Until the rename, the target still holds its old contents.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class AtomicFile {
+
+	/** Size of the buffer between a writer and the file */
+	private static final int BUFFER_LENGTH = 64 * 1024;
+	/** Suffix of the temporary file which new contents are written to */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * Writes the contents of a file.
+	 */
+	public static abstract class Content {
+		/**
+		 * Writes the contents to a stream. The stream is buffered, and is flushed
+		 * and closed once this method returns.
+		 *
+		 * @param out the stream to write to
+		 * @throws IOException if the contents could not be written
+		 */
+		public abstract void writeTo(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * Replaces the contents of <code>target</code> with <code>contents</code>.
+	 *
+	 * @param target the file to write
+	 * @param contents the new contents of the file
+	 * @throws IOException if the file could not be written, in which case it is unchanged
+	 */
+	public static void write(File target, final byte[] contents) throws IOException {
+		write(target, new Content() {
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(contents);
+			}
+		});
+	}
+
+	/**
+	 * Replaces the contents of <code>target</code> with the output of <code>content</code>.
+	 *
+	 * @param target the file to write
+	 * @param content writes the new contents of the file
+	 * @throws IOException if the file could not be written, in which case it is unchanged
+	 */
+	public static void write(File target, Content content) throws IOException {
+		File tempFile = new File(target.getPath() + TEMP_SUFFIX);
+		boolean written = false;
+		FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_LENGTH);
+			content.writeTo(out);
+			out.flush();
+			channel.force(false);
+			written = true;
+		} finally {
+			channel.close();
+			if (!written)
+				tempFile.delete();
+		}
+
+		replace(tempFile, target);
+	}
+
+	/**
+	 * Renames <code>source</code> over <code>target</code> in a single step where the
+	 * file system allows it. <code>source</code> should already have been forced to the disk.
+	 *
+	 * @param source the file holding the new contents
+	 * @param target the file to replace
+	 * @throws IOException if the file could not be renamed
+	 */
+	public static void replace(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
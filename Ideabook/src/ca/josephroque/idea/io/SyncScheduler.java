@@ -0,0 +1,119 @@
+package ca.josephroque.idea.io;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import ca.josephroque.idea.Data;
+
+/**
+ * Decides when appends to the application's journals are forced to the disk.
+ * <p>
+ * By default every append is forced before it returns. If a sync interval is
+ * set, either with {@link #setSyncInterval(long)} or the
+ * <code>ideabook.syncInterval</code> system property, channels which have been
+ * appended to are instead forced together once the interval has passed, so a
+ * burst of writes costs a single sync per file. Each journal checks its entries
+ * when it is loaded, so at most the writes made during the last interval can be
+ * lost after a crash, and never the entries before them.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class SyncScheduler {
+
+	/** Time to wait before forcing appended channels, in milliseconds. 0 to force immediately */
+	private static long syncInterval = Long.getLong("ideabook.syncInterval", 0L);
+	/** Channels which have been appended to since they were last forced */
+	private static final LinkedHashSet<FileChannel> unsynced = new LinkedHashSet<FileChannel>();
+	/** Forces unsynced channels once the interval has passed */
+	private static ScheduledExecutorService timer = null;
+	/** Whether a sync of the unsynced channels has already been scheduled */
+	private static boolean syncScheduled = false;
+
+	/**
+	 * Sets how long appends may wait before they are forced to the disk.
+	 *
+	 * @param millis the interval in milliseconds, or 0 to force every append immediately
+	 */
+	public static void setSyncInterval(long millis) {
+		synchronized (SyncScheduler.class) {
+			syncInterval = Math.max(0, millis);
+		}
+		if (millis <= 0)
+			flush();
+	}
+
+	/**
+	 * Called after data has been appended to a channel. The channel is either forced
+	 * immediately or scheduled to be forced with any others, depending on the sync interval.
+	 *
+	 * @param channel the channel which was written to
+	 * @throws IOException if the channel could not be forced
+	 */
+	public static void sync(FileChannel channel) throws IOException {
+		synchronized (SyncScheduler.class) {
+			if (syncInterval > 0) {
+				unsynced.add(channel);
+				if (!syncScheduled) {
+					syncScheduled = true;
+					getTimer().schedule(new Runnable() {
+						public void run() {
+							flush();
+						}
+					}, syncInterval, TimeUnit.MILLISECONDS);
+				}
+				return;
+			}
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Immediately forces every channel which has been appended to since it was
+	 * last forced. Channels which have since been closed are skipped, as they
+	 * are forced by their owners before they are closed.
+	 */
+	public static void flush() {
+		List<FileChannel> channels;
+		synchronized (SyncScheduler.class) {
+			channels = new ArrayList<FileChannel>(unsynced);
+			unsynced.clear();
+			syncScheduled = false;
+		}
+
+		for (FileChannel channel:channels) {
+			try {
+				channel.force(false);
+			} catch (ClosedChannelException ex) {
+				//Forced by its owner when it was closed
+			} catch (IOException io) {
+				Data.printErrorMessage(io);
+			}
+		}
+	}
+
+	/**
+	 * Returns the thread which runs scheduled syncs, creating it if needed.
+	 * @return the executor used to schedule syncs
+	 */
+	private static ScheduledExecutorService getTimer() {
+		if (timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Ideabook-sync");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return timer;
+	}
+}
@@ -0,0 +1,204 @@
+package ca.josephroque.idea.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.swing.SwingUtilities;
+
+import ca.josephroque.idea.Data;
+
+/**
+ * Runs writes to the user's data on a single background thread, so saving
+ * never blocks the Swing event thread.
+ * <p>
+ * Writes run one at a time in the order they were submitted. Each write has
+ * a key, and a write which is submitted while another with an equal key is
+ * still waiting replaces it, so saving the same data several times in quick
+ * succession only writes it once. Once a write finishes, the callback of
+ * every write it replaced is run on the event thread.
+ * <p>
+ * The queue is not bounded, since a write is never run on any thread but the
+ * writer and data which is saved repeatedly only takes one place in it. Writes
+ * submitted once the queue has been shut down are not run. The error is printed
+ * and the callback of each is told the write failed.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class WriteQueue {
+
+	/** Runs each write in turn */
+	private static final ThreadPoolExecutor executor = createExecutor();
+	/** Writes which have not started yet, by key */
+	private static final HashMap<Object, Pending> pending = new HashMap<Object, Pending>();
+
+	/**
+	 * A single write to be run in the background.
+	 */
+	public static abstract class Task {
+		/**
+		 * Performs the write. Called on the background thread.
+		 *
+		 * @return true if the write succeeded, false otherwise
+		 */
+		protected abstract boolean write();
+
+		/**
+		 * Called on the event thread once the write, or the write which
+		 * replaced it, has finished. Does nothing by default.
+		 *
+		 * @param success the value returned by {@link #write()}
+		 */
+		protected void done(boolean success) {}
+	}
+
+	/**
+	 * A write waiting to run, along with every write it has replaced.
+	 */
+	private static class Pending implements Runnable {
+		/** The key of the write */
+		private final Object key;
+		/** Every task submitted with the key, in order. The last one is written */
+		private final List<Task> tasks = new ArrayList<Task>(1);
+
+		private Pending(Object key, Task task) {
+			this.key = key;
+			this.tasks.add(task);
+		}
+
+		public void run() {
+			synchronized (WriteQueue.class) {
+				if (pending.get(key) == this)
+					pending.remove(key);
+			}
+
+			boolean success;
+			try {
+				success = tasks.get(tasks.size() - 1).write();
+			} catch (RuntimeException ex) {
+				Data.printErrorMessage(ex);
+				success = false;
+			}
+			finish(success);
+		}
+
+		/**
+		 * Runs the callback of every task on the event thread.
+		 *
+		 * @param result whether the write succeeded
+		 */
+		private void finish(final boolean result) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					for (Task task:tasks)
+						task.done(result);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Creates the single thread executor which runs each write.
+	 * @return an executor with an unbounded queue
+	 */
+	private static ThreadPoolExecutor createExecutor() {
+		return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Ideabook-writer");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Submits a write to be run in the background. If a write with an equal key
+	 * has not started yet, <code>task</code> is written in its place. If the queue
+	 * has been shut down, the write is not run and <code>task</code> is told it failed.
+	 *
+	 * @param key identifies the data being written
+	 * @param task the write to run
+	 */
+	public static void submit(Object key, Task task) {
+		Pending write;
+		synchronized (WriteQueue.class) {
+			write = pending.get(key);
+			if (write != null) {
+				write.tasks.add(task);
+				return;
+			}
+			write = new Pending(key, task);
+			pending.put(key, write);
+		}
+
+		try {
+			executor.execute(write);
+		} catch (RejectedExecutionException ex) {
+			synchronized (WriteQueue.class) {
+				if (pending.get(key) == write)
+					pending.remove(key);
+			}
+			Data.printErrorMessage(ex);
+			write.finish(false);
+		}
+	}
+
+	/**
+	 * Waits for every write submitted so far to finish, while still accepting new
+	 * writes. Called before the user's data is closed without the application exiting.
+	 *
+	 * @param timeoutMillis the longest time to wait, in milliseconds
+	 * @return true if every write finished, false if the timeout elapsed first
+	 */
+	public static boolean flush(long timeoutMillis) {
+		//Writes run one at a time in order, so once an empty write has run, every earlier one has too
+		Future<?> marker;
+		try {
+			marker = executor.submit(new Runnable() {
+				public void run() {}
+			});
+		} catch (RejectedExecutionException ex) {
+			return executor.isTerminated();
+		}
+		try {
+			marker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException ex) {
+			return false;
+		} catch (InterruptedException ex) {
+			Data.printErrorMessage(ex);
+			return false;
+		} catch (ExecutionException ex) {
+			Data.printErrorMessage(ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Stops accepting writes and waits for those already submitted to finish.
+	 * Called while the application exits.
+	 *
+	 * @param timeoutMillis the longest time to wait, in milliseconds
+	 * @return true if every write finished, false if the timeout elapsed first
+	 */
+	public static boolean shutdown(long timeoutMillis) {
+		executor.shutdown();
+		try {
+			return executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Data.printErrorMessage(ex);
+			return false;
+		}
+	}
+}
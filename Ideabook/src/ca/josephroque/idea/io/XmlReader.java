@@ -0,0 +1,149 @@
+package ca.josephroque.idea.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming reader for the small XML documents saved by the application, in which
+ * every value is the text of an element with no children.
+ * <p>
+ * The parser factory is created once and shared. Each thread reuses its own buffer
+ * for element text, and text is copied straight from the parser's character array
+ * into it, so reading a document allocates no strings apart from the ones a
+ * {@link Handler} chooses to keep.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class XmlReader {
+
+	/** Factory used to create every parser, configured once */
+	private static final XMLInputFactory inputFactory = createInputFactory();
+	/** Buffer which holds the text of the current element, one per thread */
+	private static final ThreadLocal<StringBuilder> textBuffer = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	/**
+	 * Receives the elements of a document as it is read.
+	 */
+	public static abstract class Handler {
+		/**
+		 * Called when an element begins. Returning false stops reading the document
+		 * before the element's text is read.
+		 *
+		 * @param name the name of the element
+		 * @return true to continue reading, false to stop
+		 */
+		public boolean startElement(String name) {
+			return true;
+		}
+
+		/**
+		 * Called when an element with no child elements ends. <code>text</code> is only
+		 * valid until this method returns, so it must be copied if it is kept.
+		 *
+		 * @param name the name of the element
+		 * @param text the text of the element
+		 * @return true to continue reading, false to stop
+		 */
+		public abstract boolean element(String name, CharSequence text);
+	}
+
+	/**
+	 * Creates the factory used to create parsers. External entities and DTDs are
+	 * disabled, as the application's documents never use them.
+	 *
+	 * @return a configured <code>XMLInputFactory</code>
+	 */
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		return factory;
+	}
+
+	/**
+	 * Reads the XML document in the given file.
+	 *
+	 * @param file the file to read
+	 * @param handler the handler to pass each element to
+	 * @throws IOException if the file could not be read or is not valid XML
+	 */
+	public static void read(File file, Handler handler) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			read(in, handler);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads an XML document from the given stream. The stream is not closed.
+	 *
+	 * @param in the stream to read
+	 * @param handler the handler to pass each element to
+	 * @throws IOException if the stream could not be read or is not valid XML
+	 */
+	public static void read(InputStream in, Handler handler) throws IOException {
+		StringBuilder text = textBuffer.get();
+		XMLStreamReader reader = null;
+		try {
+			reader = inputFactory.createXMLStreamReader(in);
+			boolean isLeaf = false;
+
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					text.setLength(0);
+					isLeaf = true;
+					if (!handler.startElement(reader.getLocalName()))
+						return;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					if (isLeaf)
+						text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (isLeaf) {
+						isLeaf = false;
+						if (!handler.element(reader.getLocalName(), text))
+							return;
+					}
+					break;
+				default:
+					break;
+				}
+			}
+		} catch (XMLStreamException ex) {
+			throw new IOException(ex);
+		} finally {
+			if (text.capacity() > 64 * 1024)
+				textBuffer.remove();
+			else
+				text.setLength(0);
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException ex) {
+					throw new IOException(ex);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package ca.josephroque.idea.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Streaming writer for the small XML documents saved by the application, in which
+ * every value is the text of an element with no children.
+ * <p>
+ * Elements are escaped and appended straight to a buffer as they are written, so
+ * no document tree is built. Each thread reuses its own writer and buffers, which
+ * are reset by {@link #begin(boolean)}. Documents are compact by default, with
+ * each element indented on its own line in pretty mode.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class XmlWriter {
+
+	/** Declaration at the start of every document */
+	private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+	/** Indentation of each level of elements in pretty mode */
+	private static final String INDENT = "  ";
+	/** Largest buffer which will be kept for the next document, in chars */
+	private static final int MAX_RETAINED_LENGTH = 64 * 1024;
+
+	/** Writer used by each thread */
+	private static final ThreadLocal<XmlWriter> writers = new ThreadLocal<XmlWriter>() {
+		@Override
+		protected XmlWriter initialValue() {
+			return new XmlWriter();
+		}
+	};
+
+	/** Holds the document being written */
+	private StringBuilder text = new StringBuilder(1024);
+	/** Holds the document once it has been encoded */
+	private ByteBuffer bytes = ByteBuffer.allocate(1024);
+	/** Encodes the document as UTF-8 */
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	/** Names of the elements which have been started but not ended */
+	private final ArrayList<String> openElements = new ArrayList<String>();
+	/** Whether each element is placed on its own indented line */
+	private boolean pretty;
+
+	private XmlWriter() {}
+
+	/**
+	 * Starts a new document, discarding any document previously written by
+	 * the writer for this thread.
+	 *
+	 * @param pretty true to place each element on its own indented line
+	 * @return the writer for this thread
+	 */
+	public static XmlWriter begin(boolean pretty) {
+		XmlWriter writer = writers.get();
+		if (writer.text.capacity() > MAX_RETAINED_LENGTH)
+			writer.text = new StringBuilder(1024);
+		if (writer.bytes.capacity() > MAX_RETAINED_LENGTH * 4)
+			writer.bytes = ByteBuffer.allocate(1024);
+		writer.text.setLength(0);
+		writer.openElements.clear();
+		writer.pretty = pretty;
+		writer.text.append(DECLARATION);
+		return writer;
+	}
+
+	/**
+	 * Starts an element which will contain other elements.
+	 *
+	 * @param name the name of the element
+	 * @return this writer
+	 */
+	public XmlWriter startElement(String name) {
+		newLine();
+		text.append('<').append(name).append('>');
+		openElements.add(name);
+		return this;
+	}
+
+	/**
+	 * Ends the most recently started element.
+	 *
+	 * @return this writer
+	 * @throws IllegalStateException if there is no element to end
+	 */
+	public XmlWriter endElement() {
+		if (openElements.isEmpty())
+			throw new IllegalStateException("no element to end");
+		String name = openElements.remove(openElements.size() - 1);
+		newLine();
+		text.append("</").append(name).append('>');
+		return this;
+	}
+
+	/**
+	 * Writes an element containing only text. A null value is written as an empty element.
+	 *
+	 * @param name the name of the element
+	 * @param value the text of the element
+	 * @return this writer
+	 */
+	public XmlWriter element(String name, CharSequence value) {
+		newLine();
+		if (value == null || value.length() == 0) {
+			text.append('<').append(name).append(" />");
+			return this;
+		}
+
+		text.append('<').append(name).append('>');
+		escape(value);
+		text.append("</").append(name).append('>');
+		return this;
+	}
+
+	/**
+	 * Ends any elements which are still open and returns the document encoded as UTF-8.
+	 *
+	 * @return the bytes of the document
+	 */
+	public byte[] toByteArray() {
+		ByteBuffer encoded = encode();
+		byte[] document = new byte[encoded.remaining()];
+		encoded.get(document);
+		return document;
+	}
+
+	/**
+	 * Ends any elements which are still open and writes the document, encoded as UTF-8,
+	 * to a stream. The stream is not flushed or closed.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the stream could not be written
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		ByteBuffer encoded = encode();
+		out.write(encoded.array(), encoded.position(), encoded.remaining());
+	}
+
+	/**
+	 * Ends any open elements and encodes the document into <code>bytes</code>.
+	 *
+	 * @return <code>bytes</code>, ready to be read
+	 */
+	private ByteBuffer encode() {
+		while (!openElements.isEmpty())
+			endElement();
+		if (pretty)
+			text.append('\n');
+
+		int maxLength = (int) (text.length() * (double) encoder.maxBytesPerChar());
+		if (bytes.capacity() < maxLength)
+			bytes = ByteBuffer.allocate(maxLength);
+
+		encoder.reset();
+		bytes.clear();
+		CoderResult result = encoder.encode(CharBuffer.wrap(text), bytes, true);
+		if (result.isUnderflow())
+			result = encoder.flush(bytes);
+		if (!result.isUnderflow()) {
+			//Unpaired surrogates are dropped by escape() and the buffer fits the largest encoding
+			throw new IllegalStateException(result.toString());
+		}
+		bytes.flip();
+		return bytes;
+	}
+
+	/**
+	 * Starts a new, indented line in pretty mode.
+	 */
+	private void newLine() {
+		if (!pretty)
+			return;
+		text.append('\n');
+		for (int i = 0; i < openElements.size(); i++)
+			text.append(INDENT);
+	}
+
+	/**
+	 * Appends text to the document, escaping characters which cannot appear
+	 * in the text of an element. Characters which are not allowed in XML at
+	 * all are dropped.
+	 *
+	 * @param value the text to append
+	 */
+	private void escape(CharSequence value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				text.append("&amp;");
+				break;
+			case '<':
+				text.append("&lt;");
+				break;
+			case '>':
+				text.append("&gt;");
+				break;
+			case '\r':
+				text.append("&#xD;");
+				break;
+			case '\t':
+			case '\n':
+				text.append(c);
+				break;
+			default:
+				if (c < 0x20 || c == 0xFFFE || c == 0xFFFF) {
+					break;
+				} else if (Character.isHighSurrogate(c)) {
+					if (i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+						text.append(c).append(value.charAt(++i));
+				} else if (!Character.isLowSurrogate(c)) {
+					text.append(c);
+				}
+				break;
+			}
+		}
+	}
+}
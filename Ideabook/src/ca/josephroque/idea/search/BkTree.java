@@ -0,0 +1,273 @@
+package ca.josephroque.idea.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Burkhard-Keller tree of words, used to find the words which are within a few
+ * typing mistakes of a query without comparing it to every word.
+ * <p>
+ * Distance is measured as the Levenshtein distance: the number of characters
+ * which must be inserted, removed or replaced to turn one word into the other.
+ * Each child of a node is keyed by its distance from the node, so by the
+ * triangle inequality a search only descends into children whose key is
+ * within the allowed distance of the query's own distance from the node.
+ * <p>
+ * Words which are removed are only marked as such, since removing a node would
+ * require its subtree to be rebuilt. Once more than half of the nodes are
+ * removed words, the tree is rebuilt from the remaining ones.
+ * <p>
+ * The tree is not synchronized. Callers must guard it with their own lock.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class BkTree {
+
+	/** Fewest removed words which will cause the tree to be rebuilt */
+	private static final int MIN_REBUILD_NODES = 64;
+
+	/** The first word added to the tree */
+	private Node root = null;
+	/** Number of words in the tree which have not been removed */
+	private int size = 0;
+	/** Number of nodes holding words which have been removed */
+	private int removedNodes = 0;
+
+	/**
+	 * A word and the subtrees of words at each distance from it.
+	 */
+	private static class Node {
+		/** The word held by the node */
+		private final String word;
+		/** False if the word has been removed from the tree */
+		private boolean present = true;
+		/** The distance of each child from <code>word</code> */
+		private int[] distances = null;
+		/** The children of the node */
+		private Node[] children = null;
+		/** The number of children */
+		private int childCount = 0;
+		/** The greatest distance of any child from <code>word</code> */
+		private int maxChildDistance = 0;
+
+		private Node(String word) {
+			this.word = word;
+		}
+
+		/**
+		 * Returns the child at the given distance.
+		 * @param distance the distance from <code>word</code>
+		 * @return the child, or null if there is no child at that distance
+		 */
+		private Node getChild(int distance) {
+			for (int i = 0; i < childCount; i++) {
+				if (distances[i] == distance)
+					return children[i];
+			}
+			return null;
+		}
+
+		/**
+		 * Adds a child at the given distance, which must not already have a child.
+		 * @param distance the distance from <code>word</code>
+		 * @param child the new child
+		 */
+		private void addChild(int distance, Node child) {
+			if (children == null) {
+				distances = new int[2];
+				children = new Node[2];
+			} else if (childCount == children.length) {
+				distances = Arrays.copyOf(distances, childCount * 2);
+				children = Arrays.copyOf(children, childCount * 2);
+			}
+			distances[childCount] = distance;
+			children[childCount++] = child;
+			maxChildDistance = Math.max(maxChildDistance, distance);
+		}
+	}
+
+	/**
+	 * Returns the greatest distance a word of the given length may be from the word
+	 * being searched for and still be considered a match. Short words allow no
+	 * mistakes, since nearly every short word is close to many others.
+	 *
+	 * @param length the length of the word being searched for
+	 * @return the number of mistakes allowed
+	 */
+	public static int getTolerance(int length) {
+		if (length < 4)
+			return 0;
+		return (length < 8) ? 1:2;
+	}
+
+	/**
+	 * Adds a word to the tree. Does nothing if the word is already present.
+	 *
+	 * @param word the word to add
+	 */
+	public void add(String word) {
+		if (root == null) {
+			root = new Node(word);
+			size++;
+			return;
+		}
+
+		Node node = root;
+		while (true) {
+			int distance = distance(word, node.word);
+			if (distance == 0) {
+				if (!node.present) {
+					node.present = true;
+					removedNodes--;
+					size++;
+				}
+				return;
+			}
+
+			Node child = node.getChild(distance);
+			if (child == null) {
+				node.addChild(distance, new Node(word));
+				size++;
+				return;
+			}
+			node = child;
+		}
+	}
+
+	/**
+	 * Removes a word from the tree. Does nothing if the word is not present.
+	 *
+	 * @param word the word to remove
+	 */
+	public void remove(String word) {
+		Node node = root;
+		while (node != null) {
+			int distance = distance(word, node.word);
+			if (distance == 0) {
+				if (node.present) {
+					node.present = false;
+					removedNodes++;
+					size--;
+					if (removedNodes >= MIN_REBUILD_NODES && removedNodes > size)
+						rebuild();
+				}
+				return;
+			}
+			node = node.getChild(distance);
+		}
+	}
+
+	/**
+	 * Removes every word from the tree.
+	 */
+	public void clear() {
+		root = null;
+		size = 0;
+		removedNodes = 0;
+	}
+
+	/**
+	 * Returns the number of words in the tree.
+	 * @return the value of <code>size</code>
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds every word within the given distance of <code>word</code>.
+	 *
+	 * @param word the word to search for
+	 * @param maxDistance the greatest distance a word may be from <code>word</code>
+	 * @return the matching words, in no particular order
+	 */
+	public List<String> search(String word, int maxDistance) {
+		List<String> matches = new ArrayList<String>();
+		if (root == null)
+			return matches;
+
+		List<Node> pending = new ArrayList<Node>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+			int distance = distance(word, node.word, maxDistance + node.maxChildDistance);
+			if (distance <= maxDistance && node.present)
+				matches.add(node.word);
+
+			for (int i = 0; i < node.childCount; i++) {
+				if (Math.abs(node.distances[i] - distance) <= maxDistance)
+					pending.add(node.children[i]);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Rebuilds the tree from the words which have not been removed.
+	 */
+	private void rebuild() {
+		List<String> words = new ArrayList<String>(size);
+		List<Node> pending = new ArrayList<Node>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+			if (node.present)
+				words.add(node.word);
+			for (int i = 0; i < node.childCount; i++)
+				pending.add(node.children[i]);
+		}
+
+		clear();
+		for (String word:words)
+			add(word);
+	}
+
+	/**
+	 * Returns the Levenshtein distance between two words.
+	 *
+	 * @param a the first word
+	 * @param b the second word
+	 * @return the number of single character edits which turn <code>a</code> into <code>b</code>
+	 */
+	public static int distance(CharSequence a, CharSequence b) {
+		return distance(a, b, Math.max(a.length(), b.length()));
+	}
+
+	/**
+	 * Returns the Levenshtein distance between two words, or <code>max + 1</code>
+	 * as soon as it is certain to be greater than <code>max</code>.
+	 *
+	 * @param a the first word
+	 * @param b the second word
+	 * @param max the greatest distance which needs to be known exactly
+	 * @return the distance between the words, at most <code>max + 1</code>
+	 */
+	public static int distance(CharSequence a, CharSequence b, int max) {
+		if (Math.abs(a.length() - b.length()) > max)
+			return max + 1;
+
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+			previous[j] = j;
+
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int rowMinimum = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0:1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+				rowMinimum = Math.min(rowMinimum, current[j]);
+			}
+			if (rowMinimum > max)
+				return max + 1;
+
+			int[] row = previous;
+			previous = current;
+			current = row;
+		}
+		return Math.min(previous[b.length()], max + 1);
+	}
+}
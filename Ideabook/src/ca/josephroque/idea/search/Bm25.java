@@ -0,0 +1,41 @@
+package ca.josephroque.idea.search;
+
+/**
+ * The Okapi BM25 relevance function, which scores how well a field of a
+ * document matches a term of a query. Terms which appear in few documents
+ * score higher than common ones, and each further occurrence of a term adds
+ * less than the last. Occurrences in a field longer than average count for
+ * less, in proportion to <code>b</code>.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class Bm25 {
+
+	/** How quickly repeated occurrences of a term stop adding to the score */
+	public static final double K1 = 1.2;
+	/** Default strength of the adjustment for the length of a field */
+	public static final double B = 0.75;
+
+	/**
+	 * Scores one term of a query against one field of a document.
+	 *
+	 * @param termFrequency the number of times the term appears in the field
+	 * @param fieldLength the number of terms in the field
+	 * @param averageLength the average number of terms in the field over every document
+	 * @param documentFrequency the number of documents containing the term
+	 * @param documentCount the number of documents
+	 * @param b the strength of the adjustment for the length of the field, from 0 to 1
+	 * @return the score of the term, which is 0 if it does not appear
+	 */
+	public static double score(double termFrequency, double fieldLength, double averageLength,
+			int documentFrequency, int documentCount, double b) {
+		if (termFrequency <= 0)
+			return 0;
+
+		double frequency = Math.min(documentFrequency, documentCount);
+		double idf = Math.log(1 + (documentCount - frequency + 0.5) / (frequency + 0.5));
+		double lengthRatio = (averageLength > 0) ? fieldLength / averageLength:1;
+		return idf * termFrequency * (K1 + 1) / (termFrequency + K1 * (1 - b + b * lengthRatio));
+	}
+}
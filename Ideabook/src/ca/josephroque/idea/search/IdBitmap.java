@@ -0,0 +1,498 @@
+package ca.josephroque.idea.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compressed set of non-negative integer ids, laid out like a Roaring bitmap.
+ * <p>
+ * Ids are split into chunks of 65536 by their upper 16 bits, and each chunk
+ * which holds at least one id has a container for the lower 16 bits. A sparse
+ * container is a sorted array of <code>char</code> values, taking two bytes
+ * per id. Once a container holds more than <code>ARRAY_LIMIT</code> ids it is
+ * converted to a bitmap of 65536 bits, which is smaller from then on. Sets
+ * are combined one container at a time, so intersecting a small set with a
+ * large one only looks at the chunks they share.
+ * <p>
+ * The set is not synchronized. Callers must guard it with their own lock.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class IdBitmap {
+
+	/** Most ids an array container holds before it is converted to a bitmap */
+	private static final int ARRAY_LIMIT = 4096;
+	/** Number of <code>long</code> words in a bitmap container */
+	private static final int BITMAP_WORDS = 1024;
+
+	/** The upper 16 bits of the ids in each container, in ascending order */
+	private int[] keys = new int[1];
+	/** The containers, in the same order as <code>keys</code> */
+	private Container[] containers = new Container[1];
+	/** The number of containers */
+	private int containerCount = 0;
+
+	/**
+	 * The lower 16 bits of the ids in one chunk, held as either a sorted
+	 * array or a bitmap.
+	 */
+	private static class Container {
+		/** The values in the container when it is an array, otherwise null */
+		private char[] values;
+		/** The bits of the container when it is a bitmap, otherwise null */
+		private long[] words;
+		/** The number of values in the container */
+		private int cardinality = 0;
+
+		/**
+		 * Creates an empty array container.
+		 */
+		private Container() {
+			this.values = new char[4];
+		}
+
+		/**
+		 * Creates a container holding the given values.
+		 * @param values a sorted array of values, or null
+		 * @param words a bitmap of values, or null
+		 * @param cardinality the number of values
+		 */
+		private Container(char[] values, long[] words, int cardinality) {
+			this.values = values;
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		/**
+		 * Adds a value to the container.
+		 * @param value the value to add
+		 * @return true if the value was added, false if it was already present
+		 */
+		private boolean add(char value) {
+			if (words != null) {
+				long bit = 1L << value;
+				if ((words[value >>> 6] & bit) != 0)
+					return false;
+				words[value >>> 6] |= bit;
+				cardinality++;
+				return true;
+			}
+
+			int position;
+			if (cardinality == 0 || values[cardinality - 1] < value) {
+				position = cardinality;
+			} else {
+				position = Arrays.binarySearch(values, 0, cardinality, value);
+				if (position >= 0)
+					return false;
+				position = -(position + 1);
+			}
+
+			if (cardinality == ARRAY_LIMIT) {
+				toBitmap();
+				return add(value);
+			}
+			if (cardinality == values.length)
+				values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_LIMIT));
+			System.arraycopy(values, position, values, position + 1, cardinality - position);
+			values[position] = value;
+			cardinality++;
+			return true;
+		}
+
+		/**
+		 * Removes a value from the container.
+		 * @param value the value to remove
+		 * @return true if the value was removed, false if it was not present
+		 */
+		private boolean remove(char value) {
+			if (words != null) {
+				long bit = 1L << value;
+				if ((words[value >>> 6] & bit) == 0)
+					return false;
+				words[value >>> 6] &= ~bit;
+				cardinality--;
+				if (cardinality <= ARRAY_LIMIT / 2)
+					toArray();
+				return true;
+			}
+
+			int position = Arrays.binarySearch(values, 0, cardinality, value);
+			if (position < 0)
+				return false;
+			System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+			cardinality--;
+			return true;
+		}
+
+		/**
+		 * Returns true if the container holds the given value.
+		 * @param value the value to look for
+		 * @return true if the value is present
+		 */
+		private boolean contains(char value) {
+			if (words != null)
+				return (words[value >>> 6] & (1L << value)) != 0;
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		/**
+		 * Returns the values of the container as a bitmap, which may be the container's own.
+		 * @return an array of <code>BITMAP_WORDS</code> words
+		 */
+		private long[] getWords() {
+			if (words != null)
+				return words;
+			long[] bits = new long[BITMAP_WORDS];
+			for (int i = 0; i < cardinality; i++)
+				bits[values[i] >>> 6] |= 1L << values[i];
+			return bits;
+		}
+
+		/**
+		 * Converts an array container to a bitmap.
+		 */
+		private void toBitmap() {
+			words = getWords();
+			values = null;
+		}
+
+		/**
+		 * Converts a bitmap container to an array.
+		 */
+		private void toArray() {
+			char[] array = new char[Math.max(cardinality, 4)];
+			int count = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+				while (word != 0) {
+					array[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			values = array;
+			words = null;
+		}
+
+		/**
+		 * Returns a copy of the container.
+		 * @return a new container with the same values
+		 */
+		private Container copy() {
+			return new Container((values == null) ? null:values.clone(), (words == null) ? null:words.clone(), cardinality);
+		}
+
+		/**
+		 * Creates a container from a bitmap, as an array if it holds few enough values.
+		 * @param bits the bitmap, which the new container may keep
+		 * @return the new container, or null if the bitmap is empty
+		 */
+		private static Container fromWords(long[] bits) {
+			int count = 0;
+			for (long word:bits)
+				count += Long.bitCount(word);
+			if (count == 0)
+				return null;
+
+			Container container = new Container(null, bits, count);
+			if (count <= ARRAY_LIMIT)
+				container.toArray();
+			return container;
+		}
+
+		/**
+		 * Returns the values present in both containers.
+		 */
+		private static Container and(Container a, Container b) {
+			if (a.words != null && b.words != null) {
+				long[] bits = new long[BITMAP_WORDS];
+				for (int i = 0; i < BITMAP_WORDS; i++)
+					bits[i] = a.words[i] & b.words[i];
+				return fromWords(bits);
+			}
+
+			Container small = (a.words == null) ? a:b;
+			Container other = (small == a) ? b:a;
+			char[] array = new char[small.cardinality];
+			int count = 0;
+			for (int i = 0; i < small.cardinality; i++) {
+				if (other.contains(small.values[i]))
+					array[count++] = small.values[i];
+			}
+			return (count == 0) ? null:new Container(array, null, count);
+		}
+
+		/**
+		 * Returns the values present in either container.
+		 */
+		private static Container or(Container a, Container b) {
+			if (a.words == null && b.words == null && a.cardinality + b.cardinality <= ARRAY_LIMIT) {
+				char[] array = new char[Math.max(a.cardinality + b.cardinality, 4)];
+				int i = 0;
+				int j = 0;
+				int count = 0;
+				while (i < a.cardinality || j < b.cardinality) {
+					if (j == b.cardinality || (i < a.cardinality && a.values[i] < b.values[j]))
+						array[count++] = a.values[i++];
+					else if (i == a.cardinality || b.values[j] < a.values[i])
+						array[count++] = b.values[j++];
+					else {
+						array[count++] = a.values[i++];
+						j++;
+					}
+				}
+				return new Container(array, null, count);
+			}
+
+			long[] bits = a.getWords().clone();
+			long[] otherBits = b.getWords();
+			for (int i = 0; i < BITMAP_WORDS; i++)
+				bits[i] |= otherBits[i];
+			return fromWords(bits);
+		}
+
+		/**
+		 * Returns the values present in the first container but not the second.
+		 */
+		private static Container andNot(Container a, Container b) {
+			if (a.words == null) {
+				char[] array = new char[Math.max(a.cardinality, 4)];
+				int count = 0;
+				for (int i = 0; i < a.cardinality; i++) {
+					if (!b.contains(a.values[i]))
+						array[count++] = a.values[i];
+				}
+				return (count == 0) ? null:new Container(array, null, count);
+			}
+
+			long[] bits = a.words.clone();
+			long[] otherBits = b.getWords();
+			for (int i = 0; i < BITMAP_WORDS; i++)
+				bits[i] &= ~otherBits[i];
+			return fromWords(bits);
+		}
+	}
+
+	/**
+	 * Adds an id to the set.
+	 *
+	 * @param id the id to add, which must not be negative
+	 * @return true if the id was added, false if it was already present
+	 */
+	public boolean add(int id) {
+		int key = id >>> 16;
+		int index = indexOf(key);
+		if (index < 0) {
+			index = -(index + 1);
+			insertContainer(index, key, new Container());
+		}
+		return containers[index].add((char) id);
+	}
+
+	/**
+	 * Removes an id from the set.
+	 *
+	 * @param id the id to remove
+	 * @return true if the id was removed, false if it was not present
+	 */
+	public boolean remove(int id) {
+		int index = indexOf(id >>> 16);
+		if (index < 0 || !containers[index].remove((char) id))
+			return false;
+
+		if (containers[index].cardinality == 0) {
+			System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+			System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+			containers[--containerCount] = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the set contains the given id.
+	 *
+	 * @param id the id to look for
+	 * @return true if the id is present
+	 */
+	public boolean contains(int id) {
+		int index = indexOf(id >>> 16);
+		return index >= 0 && containers[index].contains((char) id);
+	}
+
+	/**
+	 * Returns the number of ids in the set.
+	 * @return the number of ids
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < containerCount; i++)
+			cardinality += containers[i].cardinality;
+		return cardinality;
+	}
+
+	/**
+	 * Returns true if the set holds no ids.
+	 * @return true if the set is empty
+	 */
+	public boolean isEmpty() {
+		return containerCount == 0;
+	}
+
+	/**
+	 * Returns a copy of the set.
+	 * @return a new set with the same ids
+	 */
+	public IdBitmap copy() {
+		IdBitmap copy = new IdBitmap();
+		copy.keys = Arrays.copyOf(keys, Math.max(containerCount, 1));
+		copy.containers = new Container[copy.keys.length];
+		for (int i = 0; i < containerCount; i++)
+			copy.containers[i] = containers[i].copy();
+		copy.containerCount = containerCount;
+		return copy;
+	}
+
+	/**
+	 * Returns the ids in the set.
+	 * @return the ids, in ascending order
+	 */
+	public int[] toArray() {
+		int[] ids = new int[cardinality()];
+		int count = 0;
+		for (int i = 0; i < containerCount; i++) {
+			Container container = containers[i];
+			int high = keys[i] << 16;
+			if (container.words == null) {
+				for (int j = 0; j < container.cardinality; j++)
+					ids[count++] = high | container.values[j];
+			} else {
+				for (int j = 0; j < BITMAP_WORDS; j++) {
+					long word = container.words[j];
+					while (word != 0) {
+						ids[count++] = high | ((j << 6) + Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Adds every id in the set to a <code>BitSet</code>.
+	 *
+	 * @param bits the set to add the ids to
+	 */
+	public void addTo(BitSet bits) {
+		for (int id:toArray())
+			bits.set(id);
+	}
+
+	/**
+	 * Returns the ids present in both sets.
+	 *
+	 * @param a the first set
+	 * @param b the second set
+	 * @return a new set holding the intersection
+	 */
+	public static IdBitmap and(IdBitmap a, IdBitmap b) {
+		IdBitmap result = new IdBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.containerCount && j < b.containerCount) {
+			if (a.keys[i] < b.keys[j]) {
+				i++;
+			} else if (a.keys[i] > b.keys[j]) {
+				j++;
+			} else {
+				result.appendContainer(a.keys[i], Container.and(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ids present in either set.
+	 *
+	 * @param a the first set
+	 * @param b the second set
+	 * @return a new set holding the union
+	 */
+	public static IdBitmap or(IdBitmap a, IdBitmap b) {
+		IdBitmap result = new IdBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.containerCount || j < b.containerCount) {
+			if (j == b.containerCount || (i < a.containerCount && a.keys[i] < b.keys[j])) {
+				result.appendContainer(a.keys[i], a.containers[i].copy());
+				i++;
+			} else if (i == a.containerCount || a.keys[i] > b.keys[j]) {
+				result.appendContainer(b.keys[j], b.containers[j].copy());
+				j++;
+			} else {
+				result.appendContainer(a.keys[i], Container.or(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ids present in the first set but not the second.
+	 *
+	 * @param a the set to take ids from
+	 * @param b the set of ids to leave out
+	 * @return a new set holding the difference
+	 */
+	public static IdBitmap andNot(IdBitmap a, IdBitmap b) {
+		IdBitmap result = new IdBitmap();
+		int j = 0;
+		for (int i = 0; i < a.containerCount; i++) {
+			while (j < b.containerCount && b.keys[j] < a.keys[i])
+				j++;
+			if (j < b.containerCount && b.keys[j] == a.keys[i])
+				result.appendContainer(a.keys[i], Container.andNot(a.containers[i], b.containers[j]));
+			else
+				result.appendContainer(a.keys[i], a.containers[i].copy());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the position of the container for the given key.
+	 * @param key the upper 16 bits of an id
+	 * @return the index of the container, or <code>-(insertion point) - 1</code> if there is none
+	 */
+	private int indexOf(int key) {
+		if (containerCount > 0 && keys[containerCount - 1] == key)
+			return containerCount - 1;
+		return Arrays.binarySearch(keys, 0, containerCount, key);
+	}
+
+	/**
+	 * Inserts a container at the given position.
+	 */
+	private void insertContainer(int index, int key, Container container) {
+		if (containerCount == keys.length) {
+			keys = Arrays.copyOf(keys, containerCount * 2);
+			containers = Arrays.copyOf(containers, containerCount * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+		System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+		keys[index] = key;
+		containers[index] = container;
+		containerCount++;
+	}
+
+	/**
+	 * Adds a container after every other container, unless it is null.
+	 */
+	private void appendContainer(int key, Container container) {
+		if (container != null)
+			insertContainer(containerCount, key, container);
+	}
+}
@@ -0,0 +1,132 @@
+package ca.josephroque.idea.search;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers the ideas matched by recent searches, so a search which is
+ * repeated, such as when the user deletes a character or picks another
+ * category, is answered without looking at the indexes again.
+ * <p>
+ * Results are keyed by the normalized query alone and hold the ids of matching
+ * ideas in every category, so the category being searched is applied to the
+ * cached results rather than being part of the key. Each entry also keeps
+ * the ideas whose name or a tag contains the query. Since a string containing
+ * a query contains every prefix of it, these narrow the search when the user
+ * types another character.
+ * <p>
+ * Any change to the indexes calls {@link #invalidate()}, which empties the cache.
+ * Results are only stored if nothing changed while they were being found.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class SearchCache {
+
+	/** Number of searches which are remembered */
+	private static final int CAPACITY = 32;
+
+	/** The results of recent searches, from least to most recently used */
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(CAPACITY * 2, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SearchCache.Entry> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+	/** Incremented each time the cache is invalidated */
+	private static long version = 0;
+
+	/**
+	 * The ideas matched by a single search. The sets must not be modified once
+	 * they have been stored.
+	 */
+	public static class Entry {
+		/** The ids of the ideas whose name or a tag contains the query */
+		public final BitSet textMatches;
+		/** The ids of every idea matching the query */
+		public final BitSet matches;
+
+		/**
+		 * Creates an entry holding the given results.
+		 *
+		 * @param textMatches the ids of the ideas whose name or a tag contains the query
+		 * @param matches the ids of every idea matching the query
+		 */
+		public Entry(BitSet textMatches, BitSet matches) {
+			this.textMatches = textMatches;
+			this.matches = matches;
+		}
+	}
+
+	/**
+	 * Returns the key a query is cached under. Names and tags are compared ignoring
+	 * case, as are the terms of a body, so the key is the query in lower case.
+	 *
+	 * @param query the text being searched for
+	 * @return the query in a normal form
+	 */
+	public static String normalize(String query) {
+		return query.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Returns the current version of the cache, which must be passed to
+	 * {@link #put(String, Entry, long)} once the results have been found.
+	 *
+	 * @return the number of times the cache has been invalidated
+	 */
+	public static synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the cached results of a query.
+	 *
+	 * @param key the normalized query
+	 * @return the results of the query, or null if they are not cached
+	 */
+	public static synchronized Entry get(String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Returns the cached results of the longest query which <code>key</code>
+	 * begins with, not counting <code>key</code> itself.
+	 *
+	 * @param key the normalized query
+	 * @return the results of the longest cached prefix, or null if there are none
+	 */
+	public static synchronized Entry getLongestPrefix(String key) {
+		for (int length = key.length() - 1; length > 0; length--) {
+			Entry entry = entries.get(key.substring(0, length));
+			if (entry != null)
+				return entry;
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the results of a query, unless the cache has been invalidated since
+	 * <code>startVersion</code> was retrieved.
+	 *
+	 * @param key the normalized query
+	 * @param entry the results of the query
+	 * @param startVersion the value of {@link #getVersion()} before the search began
+	 */
+	public static synchronized void put(String key, Entry entry, long startVersion) {
+		if (startVersion == version)
+			entries.put(key, entry);
+	}
+
+	/**
+	 * Removes every cached result. Called whenever an index changes.
+	 */
+	public static synchronized void invalidate() {
+		version++;
+		entries.clear();
+	}
+}
@@ -0,0 +1,373 @@
+package ca.josephroque.idea.search;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A search typed by the user, parsed into clauses which must all be matched.
+ * <p>
+ * The query is a list of terms separated by spaces. A term is either text, which
+ * is looked for in the name, tags and body of each idea, or a field and value
+ * separated by a colon:
+ * <ul>
+ * <li><code>tag:home</code> matches ideas with the tag <code>home</code></li>
+ * <li><code>category:work</code> matches ideas in the category <code>work</code></li>
+ * <li><code>created:&gt;2014-01-01</code> matches ideas created after the given day.
+ * <code>&lt;</code>, <code>&gt;=</code> and <code>&lt;=</code> may also be used,
+ * and a day on its own matches that day</li>
+ * <li><code>modified:&lt;7d</code> matches ideas modified less than seven days ago,
+ * and <code>&gt;7d</code> those modified longer ago. Ages may be given in days,
+ * weeks (<code>w</code>), months of 30 days (<code>m</code>) or years (<code>y</code>)</li>
+ * </ul>
+ * Values containing spaces may be put in double quotes, as may phrases of text.
+ * A term beginning with <code>-</code> matches the ideas which the rest of it does
+ * not, and two terms joined by <code>OR</code> match the ideas which either does.
+ * Text which is neither negated nor joined by <code>OR</code> is kept together as
+ * a single term, so a query without any of the syntax above is searched for as
+ * it was typed.
+ * <p>
+ * Since the query is parsed as the user types, anything incomplete or invalid,
+ * such as a field without a value or a date which cannot be read, is ignored
+ * rather than reported.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class SearchQuery {
+
+	/** Term which matches text in the name, tags or body of an idea */
+	public static final int FIELD_TEXT = 0;
+	/** Term which matches the ideas with a tag */
+	public static final int FIELD_TAG = 1;
+	/** Term which matches the ideas in a category */
+	public static final int FIELD_CATEGORY = 2;
+	/** Term which matches the ideas created within a range of time */
+	public static final int FIELD_CREATED = 3;
+	/** Term which matches the ideas last modified within a range of time */
+	public static final int FIELD_MODIFIED = 4;
+
+	/** Names of the fields which may precede a colon, indexed by field */
+	private static final String[] FIELD_NAMES = {null, "tag", "category", "created", "modified"};
+	/** Word which joins two terms so that either may match */
+	private static final String OPERATOR_OR = "OR";
+	/** Milliseconds in a day */
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	/** The clauses of the query. Each is a list of terms, of which at least one must match */
+	private final List<List<Term>> clauses;
+
+	/**
+	 * A single condition on the ideas which match a query.
+	 */
+	public static class Term {
+		/** The field the term matches, such as <code>FIELD_TAG</code> */
+		public final int field;
+		/** The text, tag or category to match, or the date as it was typed */
+		public final String value;
+		/** True if the term matches the ideas which the value does not */
+		public final boolean negated;
+		/** Start of the range of time matched by a date, in milliseconds, inclusive */
+		public final long from;
+		/** End of the range of time matched by a date, in milliseconds, exclusive */
+		public final long to;
+
+		/**
+		 * Creates a term with the given field and value.
+		 *
+		 * @param field the field the term matches
+		 * @param value the value to match
+		 * @param negated true if the term matches the ideas which the value does not
+		 * @param from start of the range of time matched, for a date
+		 * @param to end of the range of time matched, for a date
+		 */
+		public Term(int field, String value, boolean negated, long from, long to) {
+			this.field = field;
+			this.value = value;
+			this.negated = negated;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	/**
+	 * A term as it was read from the query, before it is placed in a clause.
+	 */
+	private static class Atom {
+		/** The term read, or null if the atom was ignored or is <code>OR</code> */
+		private Term term;
+		/** True if the atom is <code>OR</code> */
+		private boolean or;
+		/** The position of the first character of the term in the query */
+		private int start;
+		/** The position after the last character of the term in the query */
+		private int end;
+	}
+
+	/**
+	 * Creates a query with the given clauses.
+	 * @param clauses the clauses of the query
+	 */
+	private SearchQuery(List<List<Term>> clauses) {
+		this.clauses = clauses;
+	}
+
+	/**
+	 * Parses a query typed by the user.
+	 *
+	 * @param text the query
+	 * @param now the current time, in milliseconds, which ages are measured from
+	 * @return the parsed query
+	 */
+	public static SearchQuery parse(String text, long now) {
+		List<Atom> atoms = new ArrayList<Atom>();
+		int position = 0;
+		while (position < text.length()) {
+			if (Character.isWhitespace(text.charAt(position))) {
+				position++;
+				continue;
+			}
+			Atom atom = readAtom(text, position, now);
+			position = atom.end;
+			atoms.add(atom);
+		}
+
+		List<List<Term>> clauses = new ArrayList<List<Term>>();
+		Atom lastText = null;
+		Atom firstText = null;
+		for (int i = 0; i < atoms.size(); i++) {
+			Atom atom = atoms.get(i);
+			if (atom.term == null)
+				continue;
+
+			boolean joinedBefore = i > 0 && atoms.get(i - 1).or;
+			boolean joinedAfter = i < atoms.size() - 1 && atoms.get(i + 1).or;
+			if (atom.term.field == FIELD_TEXT && !atom.term.negated && !joinedBefore && !joinedAfter) {
+				if (lastText == null)
+					firstText = atom;
+				lastText = atom;
+				continue;
+			}
+			if (lastText != null) {
+				addClause(clauses, getText(text, firstText, lastText), false);
+				lastText = null;
+			}
+			addClause(clauses, atom.term, joinedBefore);
+		}
+		if (lastText != null)
+			addClause(clauses, getText(text, firstText, lastText), false);
+
+		return new SearchQuery(clauses);
+	}
+
+	/**
+	 * Returns the clauses of the query. Each clause is a list of terms, of which at
+	 * least one must match an idea for the clause to match it. An idea matches the
+	 * query if it matches every clause.
+	 *
+	 * @return the clauses of the query, which must not be modified
+	 */
+	public List<List<Term>> getClauses() {
+		return Collections.unmodifiableList(clauses);
+	}
+
+	/**
+	 * Returns true if the query has no clauses, in which case every idea matches it.
+	 * @return true if there are no terms to match
+	 */
+	public boolean isEmpty() {
+		return clauses.isEmpty();
+	}
+
+	/**
+	 * Returns the text searched for by the terms which are not negated, which is what
+	 * the matching ideas are ranked against.
+	 *
+	 * @return the text of each such term, separated by spaces
+	 */
+	public String getSearchText() {
+		StringBuilder searchText = new StringBuilder();
+		for (List<Term> clause:clauses) {
+			for (Term term:clause) {
+				if (term.field == FIELD_TEXT && !term.negated)
+					searchText.append(term.value).append(' ');
+			}
+		}
+		return searchText.toString();
+	}
+
+	/**
+	 * Adds a term to the query, either as a clause of its own or as another
+	 * alternative of the last clause.
+	 */
+	private static void addClause(List<List<Term>> clauses, Term term, boolean joined) {
+		if (term == null)
+			return;
+		if (joined && !clauses.isEmpty()) {
+			clauses.get(clauses.size() - 1).add(term);
+		} else {
+			List<Term> clause = new ArrayList<Term>(1);
+			clause.add(term);
+			clauses.add(clause);
+		}
+	}
+
+	/**
+	 * Returns a text term holding the query from the start of one atom to the end of
+	 * another.
+	 *
+	 * @return the term, or null if the text holds nothing to search for
+	 */
+	private static Term getText(String text, Atom first, Atom last) {
+		String value = text.substring(first.start, last.end);
+		if (value.replace("\"", "").trim().length() == 0)
+			return null;
+		return new Term(FIELD_TEXT, value, false, 0, 0);
+	}
+
+	/**
+	 * Reads the term which begins at the given position.
+	 *
+	 * @param text the query
+	 * @param start the position of the first character of the term
+	 * @param now the current time, in milliseconds
+	 * @return the term read
+	 */
+	private static Atom readAtom(String text, int start, long now) {
+		Atom atom = new Atom();
+		atom.start = start;
+		int position = start;
+		boolean negated = false;
+		if (text.charAt(position) == '-' && position + 1 < text.length() && !Character.isWhitespace(text.charAt(position + 1))) {
+			negated = true;
+			position++;
+		}
+
+		int field = FIELD_TEXT;
+		int valueStart = position;
+		if (text.charAt(position) != '"') {
+			int colon = position;
+			while (colon < text.length() && Character.isLetter(text.charAt(colon)))
+				colon++;
+			if (colon < text.length() && text.charAt(colon) == ':') {
+				String fieldName = text.substring(position, colon).toLowerCase(Locale.ENGLISH);
+				for (int i = 1; i < FIELD_NAMES.length; i++) {
+					if (FIELD_NAMES[i].equals(fieldName)) {
+						field = i;
+						valueStart = colon + 1;
+					}
+				}
+			}
+		}
+
+		int valueEnd;
+		String value;
+		if (valueStart < text.length() && text.charAt(valueStart) == '"') {
+			valueEnd = text.indexOf('"', valueStart + 1);
+			valueEnd = (valueEnd < 0) ? text.length():valueEnd + 1;
+			value = (field == FIELD_TEXT)
+					? text.substring(valueStart, valueEnd)
+					: text.substring(valueStart + 1, Math.max(valueStart + 1, valueEnd - 1)).replace("\"", "");
+		} else {
+			valueEnd = valueStart;
+			while (valueEnd < text.length() && !Character.isWhitespace(text.charAt(valueEnd)))
+				valueEnd++;
+			value = text.substring(valueStart, valueEnd);
+		}
+		atom.end = valueEnd;
+
+		if (field == FIELD_TEXT && !negated && value.equals(OPERATOR_OR)) {
+			atom.or = true;
+			return atom;
+		}
+		if (field == FIELD_TEXT) {
+			atom.start = valueStart;
+			atom.term = new Term(field, value, negated, 0, 0);
+		} else if (field == FIELD_CREATED || field == FIELD_MODIFIED) {
+			long[] range = parseDateRange(value, now);
+			if (range != null)
+				atom.term = new Term(field, value, negated, range[0], range[1]);
+		} else if (value.trim().length() > 0) {
+			atom.term = new Term(field, value.trim(), negated, 0, 0);
+		}
+		return atom;
+	}
+
+	/**
+	 * Reads the range of time matched by the value of a date term, which is a
+	 * comparison followed by either a day in the form <code>yyyy-MM-dd</code>
+	 * or an age such as <code>7d</code>.
+	 *
+	 * @param value the value of the term
+	 * @param now the current time, in milliseconds
+	 * @return the start and end of the range, or null if the value is invalid
+	 */
+	private static long[] parseDateRange(String value, long now) {
+		String comparison = "";
+		while (comparison.length() < value.length() && "<>=".indexOf(value.charAt(comparison.length())) >= 0)
+			comparison = value.substring(0, comparison.length() + 1);
+		String date = value.substring(comparison.length());
+		if (date.length() == 0)
+			return null;
+
+		long age = parseAge(date);
+		if (age >= 0) {
+			//Ideas modified less than an age ago were modified after that time
+			if (comparison.startsWith(">"))
+				return new long[]{Long.MIN_VALUE, now - age};
+			return new long[]{now - age, Long.MAX_VALUE};
+		}
+
+		SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+		dayFormat.setLenient(false);
+		Calendar day = Calendar.getInstance();
+		try {
+			day.setTime(dayFormat.parse(date));
+		} catch (ParseException ex) {
+			return null;
+		}
+		long startOfDay = day.getTimeInMillis();
+		day.add(Calendar.DAY_OF_MONTH, 1);
+		long endOfDay = day.getTimeInMillis();
+
+		if (comparison.equals(">"))
+			return new long[]{endOfDay, Long.MAX_VALUE};
+		else if (comparison.equals(">="))
+			return new long[]{startOfDay, Long.MAX_VALUE};
+		else if (comparison.equals("<"))
+			return new long[]{Long.MIN_VALUE, startOfDay};
+		else if (comparison.equals("<="))
+			return new long[]{Long.MIN_VALUE, endOfDay};
+		else if (comparison.length() == 0 || comparison.equals("="))
+			return new long[]{startOfDay, endOfDay};
+		return null;
+	}
+
+	/**
+	 * Reads an age such as <code>7d</code>, <code>2w</code>, <code>3m</code> or <code>1y</code>.
+	 *
+	 * @param age the age to read
+	 * @return the age in milliseconds, or -1 if it is not an age
+	 */
+	private static long parseAge(String age) {
+		int digits = 0;
+		while (digits < age.length() && Character.isDigit(age.charAt(digits)))
+			digits++;
+		if (digits == 0 || digits > 5 || digits != age.length() - 1)
+			return -1;
+
+		long days;
+		switch (Character.toLowerCase(age.charAt(digits))) {
+			case 'd': days = 1; break;
+			case 'w': days = 7; break;
+			case 'm': days = 30; break;
+			case 'y': days = 365; break;
+			default: return -1;
+		}
+		return Long.parseLong(age.substring(0, digits)) * days * MILLIS_PER_DAY;
+	}
+}
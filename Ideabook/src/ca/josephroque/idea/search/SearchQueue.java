@@ -0,0 +1,145 @@
+package ca.josephroque.idea.search;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+import ca.josephroque.idea.Data;
+
+/**
+ * Runs searches on a single background thread, so the time a search takes
+ * never delays typing on the Swing event thread.
+ * <p>
+ * Only the most recent search matters. Submitting a search waits a short
+ * delay before running it, and a search submitted during that delay replaces
+ * it, so a query is only run once the user stops typing. Every search is given
+ * a generation when it is submitted. A search which has been replaced by a
+ * newer one is skipped if it has not started, can stop early by checking
+ * {@link Query#isSuperseded()}, and never has its results published.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class SearchQueue {
+
+	/** Delay before a submitted search runs, in milliseconds */
+	public static final long DEBOUNCE_DELAY = 150;
+
+	/** Runs each search in turn */
+	private static final ScheduledThreadPoolExecutor executor = createExecutor();
+	/** Generation of the most recently submitted search */
+	private static final AtomicLong generation = new AtomicLong();
+	/** The search waiting for its delay to elapse, if any */
+	private static ScheduledFuture<?> scheduled = null;
+
+	/**
+	 * A single search to be run in the background.
+	 *
+	 * @param <T> the type of the results of the search
+	 */
+	public static abstract class Query<T> implements Runnable {
+		/** The generation the search was submitted in */
+		private long queryGeneration;
+
+		/**
+		 * Performs the search. Called on the background thread. Long searches should
+		 * return early if {@link #isSuperseded()} is true, as their results will be discarded.
+		 *
+		 * @return the results of the search
+		 */
+		protected abstract T search();
+
+		/**
+		 * Displays the results of the search. Called on the event thread, and only if
+		 * no other search has been submitted since this one.
+		 *
+		 * @param results the value returned by {@link #search()}
+		 */
+		protected abstract void publish(T results);
+
+		/**
+		 * Returns true if a newer search has been submitted, or searches have been
+		 * cancelled, since this search was submitted.
+		 *
+		 * @return true if the results of this search will not be published
+		 */
+		public final boolean isSuperseded() {
+			return queryGeneration != generation.get();
+		}
+
+		public final void run() {
+			if (isSuperseded())
+				return;
+
+			final T results;
+			try {
+				results = search();
+			} catch (RuntimeException ex) {
+				Data.printErrorMessage(ex);
+				return;
+			}
+
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					if (!isSuperseded())
+						publish(results);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Creates the single thread executor which runs each search.
+	 * @return an executor which runs searches after a delay
+	 */
+	private static ScheduledThreadPoolExecutor createExecutor() {
+		ScheduledThreadPoolExecutor searchExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Ideabook-search");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		searchExecutor.setRemoveOnCancelPolicy(true);
+		return searchExecutor;
+	}
+
+	/**
+	 * Submits a search to run once <code>DEBOUNCE_DELAY</code> has elapsed, replacing
+	 * every search submitted before it.
+	 *
+	 * @param query the search to run
+	 */
+	public static void submit(Query<?> query) {
+		submit(query, DEBOUNCE_DELAY);
+	}
+
+	/**
+	 * Submits a search to run after the given delay, replacing every search
+	 * submitted before it.
+	 *
+	 * @param query the search to run
+	 * @param delayMillis the time to wait before running the search, in milliseconds
+	 */
+	public static synchronized void submit(Query<?> query, long delayMillis) {
+		query.queryGeneration = generation.incrementAndGet();
+		if (scheduled != null)
+			scheduled.cancel(false);
+		scheduled = executor.schedule(query, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Discards every search which has been submitted. Searches which are running
+	 * will not have their results published.
+	 */
+	public static synchronized void cancel() {
+		generation.incrementAndGet();
+		if (scheduled != null)
+			scheduled.cancel(false);
+		scheduled = null;
+	}
+}
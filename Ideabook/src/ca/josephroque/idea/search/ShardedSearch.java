@@ -0,0 +1,161 @@
+package ca.josephroque.idea.search;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits the work of a search across the cores of the machine once a library
+ * is large enough for it to pay off.
+ * <p>
+ * Work runs on a {@link ForkJoinPool} of daemon threads kept for searches, so
+ * it never competes with other users of the common pool. Scoring a large set
+ * of ideas is split into shards of consecutive ids, each of which keeps its
+ * own best scores in a {@link TopScores} heap, and the heaps are merged as
+ * the shards are joined. Independent lookups, such as in different indexes,
+ * can also be forked to run beside each other. Below
+ * <code>SHARD_THRESHOLD</code> ideas, everything runs on the calling thread,
+ * since starting tasks would cost more than it saves.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class ShardedSearch {
+
+	/** Fewest ideas in a shard, and fewest ideas in a search before any work is split */
+	public static final int SHARD_THRESHOLD = 8192;
+
+	/** Runs the shards of each search */
+	private static final ForkJoinPool pool = createPool();
+
+	/**
+	 * Scores the ideas in one shard of a search.
+	 */
+	public interface Scorer {
+		/**
+		 * Scores each of the given ideas. Called on any thread, and possibly for
+		 * several shards at once.
+		 *
+		 * @param ideaIds the ids of the ideas in the shard
+		 * @param scores filled with the score of each idea in <code>ideaIds</code>
+		 */
+		void score(int[] ideaIds, double[] scores);
+	}
+
+	/**
+	 * Scores a range of ideas, splitting it in half until each part is no
+	 * larger than <code>SHARD_THRESHOLD</code>.
+	 */
+	private static class ShardTask extends RecursiveTask<TopScores> {
+		/** Default serialVersionUID */
+		private static final long serialVersionUID = 1L;
+
+		/** The ids of every idea being scored */
+		private final int[] ideaIds;
+		/** The first position in <code>ideaIds</code> scored by this task */
+		private final int start;
+		/** The position after the last one scored by this task */
+		private final int end;
+		/** The number of ideas to keep */
+		private final int count;
+		/** Scores each shard */
+		private final Scorer scorer;
+
+		private ShardTask(int[] ideaIds, int start, int end, int count, Scorer scorer) {
+			this.ideaIds = ideaIds;
+			this.start = start;
+			this.end = end;
+			this.count = count;
+			this.scorer = scorer;
+		}
+
+		@Override
+		protected TopScores compute() {
+			if (end - start <= SHARD_THRESHOLD)
+				return scoreShard(Arrays.copyOfRange(ideaIds, start, end), count, scorer);
+
+			int middle = (start + end) >>> 1;
+			ShardTask left = new ShardTask(ideaIds, start, middle, count, scorer);
+			left.fork();
+			TopScores best = new ShardTask(ideaIds, middle, end, count, scorer).compute();
+			best.offerAll(left.join());
+			return best;
+		}
+	}
+
+	/**
+	 * Creates the pool which runs the shards of each search, with one thread for
+	 * each core but the one the search itself runs on.
+	 * @return a pool of daemon threads
+	 */
+	private static ForkJoinPool createPool() {
+		int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		return new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("Ideabook-search-" + thread.getPoolIndex());
+				thread.setDaemon(true);
+				return thread;
+			}
+		}, null, false);
+	}
+
+	/**
+	 * Returns true if a search over the given number of ideas is large enough to be split.
+	 *
+	 * @param ideaCount the number of ideas being searched
+	 * @return true if work should be forked to other threads
+	 */
+	public static boolean shouldSplit(int ideaCount) {
+		return ideaCount >= SHARD_THRESHOLD * 2 && pool.getParallelism() > 1;
+	}
+
+	/**
+	 * Returns the ideas with the highest scores. If there are enough ideas, they
+	 * are split into shards of consecutive ids which are scored in parallel.
+	 *
+	 * @param ideaIds the ids of the ideas to score, which must not be modified
+	 * @param count the number of ideas to return
+	 * @param scorer scores the ideas in each shard
+	 * @return the ids of at most <code>count</code> ideas, from highest to lowest score
+	 */
+	public static int[] findTopScores(int[] ideaIds, int count, Scorer scorer) {
+		if (!shouldSplit(ideaIds.length))
+			return scoreShard(ideaIds, count, scorer).drain(null);
+		return pool.invoke(new ShardTask(ideaIds, 0, ideaIds.length, count, scorer)).drain(null);
+	}
+
+	/**
+	 * Starts a task on the search pool, to be joined by the caller once its result is needed.
+	 * If the search is not large enough to be split, the task is run on the calling
+	 * thread before this method returns.
+	 *
+	 * @param task the task to run
+	 * @param ideaCount the number of ideas being searched
+	 * @param <T> the type of the result of the task
+	 * @return the running or completed task
+	 */
+	public static <T> ForkJoinTask<T> fork(Callable<T> task, int ideaCount) {
+		ForkJoinTask<T> forked = ForkJoinTask.adapt(task);
+		if (shouldSplit(ideaCount))
+			pool.execute(forked);
+		else
+			forked.invoke();
+		return forked;
+	}
+
+	/**
+	 * Scores the ideas of a single shard and keeps the best of them.
+	 */
+	private static TopScores scoreShard(int[] ideaIds, int count, Scorer scorer) {
+		double[] scores = new double[ideaIds.length];
+		scorer.score(ideaIds, scores);
+		TopScores best = new TopScores(count);
+		for (int i = 0; i < ideaIds.length; i++)
+			best.offer(ideaIds[i], scores[i]);
+		return best;
+	}
+}
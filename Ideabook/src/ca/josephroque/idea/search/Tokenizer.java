@@ -0,0 +1,55 @@
+package ca.josephroque.idea.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into the terms which are indexed and searched for. A term is a
+ * run of letters and digits, in lower case. Terms longer than
+ * <code>MAX_TERM_LENGTH</code> are skipped, but still count as a position.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class Tokenizer {
+
+	/** Longest term which will be indexed */
+	public static final int MAX_TERM_LENGTH = 40;
+
+	/**
+	 * Returns the terms in <code>text</code>, in order. A term which is too long to
+	 * be indexed is returned as null, so the position of each term is its index
+	 * in the list.
+	 *
+	 * @param text the text to split
+	 * @return the terms in the text
+	 */
+	public static List<String> tokenize(CharSequence text) {
+		List<String> terms = new ArrayList<String>();
+		if (text == null)
+			return terms;
+
+		StringBuilder term = new StringBuilder(16);
+		for (int i = 0; i <= text.length(); i++) {
+			char c = (i < text.length()) ? text.charAt(i):' ';
+			if (Character.isLetterOrDigit(c)) {
+				term.append(Character.toLowerCase(c));
+			} else if (term.length() > 0) {
+				terms.add((term.length() <= MAX_TERM_LENGTH) ? term.toString():null);
+				term.setLength(0);
+			}
+		}
+		return terms;
+	}
+
+	/**
+	 * Returns true if the last character of <code>text</code> is part of a term,
+	 * meaning the last term may not have been finished yet.
+	 *
+	 * @param text the text to check
+	 * @return true if <code>text</code> ends with a letter or digit
+	 */
+	public static boolean endsInTerm(CharSequence text) {
+		return text != null && text.length() > 0 && Character.isLetterOrDigit(text.charAt(text.length() - 1));
+	}
+}
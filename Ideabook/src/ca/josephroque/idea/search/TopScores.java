@@ -0,0 +1,142 @@
+package ca.josephroque.idea.search;
+
+/**
+ * Keeps the ids with the highest scores out of any number offered to it,
+ * using a heap of fixed size. Finding the best <code>k</code> of <code>n</code>
+ * ids this way takes time proportional to <code>n log k</code> rather than
+ * sorting all of them.
+ * <p>
+ * Of two equal scores, the lower id ranks higher.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class TopScores {
+
+	/** Ids in the heap, with the lowest ranked at the root */
+	private final int[] ids;
+	/** The score of each id in <code>ids</code> */
+	private final double[] scores;
+	/** The number of ids in the heap */
+	private int size = 0;
+
+	/**
+	 * Creates a heap which keeps the given number of ids.
+	 *
+	 * @param capacity the number of ids to keep
+	 */
+	public TopScores(int capacity) {
+		this.ids = new int[Math.max(capacity, 1)];
+		this.scores = new double[ids.length];
+	}
+
+	/**
+	 * Offers an id to the heap. It is kept if there is room or if it ranks
+	 * higher than the lowest id being kept, which is then dropped.
+	 *
+	 * @param id the id
+	 * @param score the score of the id
+	 */
+	public void offer(int id, double score) {
+		if (size < ids.length) {
+			ids[size] = id;
+			scores[size] = score;
+			siftUp(size++);
+		} else if (ranksBelow(ids[0], scores[0], id, score)) {
+			ids[0] = id;
+			scores[0] = score;
+			siftDown(0, size);
+		}
+	}
+
+	/**
+	 * Offers every id kept by another heap to this one, such as when merging
+	 * the best ids found in separate parts of a search.
+	 *
+	 * @param other the heap whose ids are offered, which is not changed
+	 */
+	public void offerAll(TopScores other) {
+		for (int i = 0; i < other.size; i++)
+			offer(other.ids[i], other.scores[i]);
+	}
+
+	/**
+	 * Returns the number of ids being kept.
+	 * @return the value of <code>size</code>
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every id from the heap and returns them from highest to lowest ranked.
+	 *
+	 * @param rankedScores filled with the score of each returned id, if not null.
+	 * 			Must have room for <code>size()</code> scores
+	 * @return the ids which were kept, in order of rank
+	 */
+	public int[] drain(double[] rankedScores) {
+		int[] ranked = new int[size];
+		while (size > 0) {
+			size--;
+			ranked[size] = ids[0];
+			if (rankedScores != null)
+				rankedScores[size] = scores[0];
+			ids[0] = ids[size];
+			scores[0] = scores[size];
+			siftDown(0, size);
+		}
+		return ranked;
+	}
+
+	/**
+	 * Returns true if the first id ranks lower than the second.
+	 */
+	private static boolean ranksBelow(int id1, double score1, int id2, double score2) {
+		return (score1 < score2) || (score1 == score2 && id1 > id2);
+	}
+
+	/**
+	 * Moves the entry at <code>index</code> towards the root until its parent ranks lower.
+	 */
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!ranksBelow(ids[index], scores[index], ids[parent], scores[parent]))
+				return;
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	/**
+	 * Moves the entry at <code>index</code> away from the root until both children rank higher.
+	 */
+	private void siftDown(int index, int heapSize) {
+		while (true) {
+			int lowest = index;
+			int left = index * 2 + 1;
+			int right = left + 1;
+			if (left < heapSize && ranksBelow(ids[left], scores[left], ids[lowest], scores[lowest]))
+				lowest = left;
+			if (right < heapSize && ranksBelow(ids[right], scores[right], ids[lowest], scores[lowest]))
+				lowest = right;
+			if (lowest == index)
+				return;
+			swap(index, lowest);
+			index = lowest;
+		}
+	}
+
+	/**
+	 * Exchanges two entries of the heap.
+	 */
+	private void swap(int i, int j) {
+		int id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+		double score = scores[i];
+		scores[i] = scores[j];
+		scores[j] = score;
+	}
+}
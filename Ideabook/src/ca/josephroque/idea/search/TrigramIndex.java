@@ -0,0 +1,223 @@
+package ca.josephroque.idea.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Index of every three character sequence in a set of strings, used to find
+ * the strings which contain a substring without looking at each of them.
+ * <p>
+ * Each string is identified by a small integer id chosen by the caller and is
+ * compared ignoring case. A query looks up the posting list of each trigram in
+ * the substring, filters the shortest list against the others and then checks
+ * the few remaining candidates directly. Substrings shorter than a trigram are
+ * matched by checking every string, which allocates nothing.
+ * <p>
+ * The index is not synchronized. Callers must guard it with their own lock.
+ *
+ * @author agent
+ * @since 2026-10-18
+ */
+public class TrigramIndex {
+
+	/** Number of characters in each indexed sequence */
+	private static final int GRAM_LENGTH = 3;
+
+	/** The ids of the strings which contain each trigram, keyed by the packed trigram */
+	private final HashMap<Long, Postings> grams = new HashMap<Long, Postings>();
+	/** The upper case form of each string, indexed by id. Null if the id is not in use */
+	private final ArrayList<String> texts = new ArrayList<String>();
+	/** Number of strings in the index */
+	private int size = 0;
+
+	/**
+	 * A sorted list of ids, which grows as ids are added.
+	 */
+	private static class Postings {
+		/** The ids in the list, sorted in ascending order */
+		private int[] ids = new int[2];
+		/** The number of ids in the list */
+		private int size = 0;
+
+		/**
+		 * Adds an id to the list if it is not already present.
+		 * @param id the id to add
+		 */
+		private void add(int id) {
+			if (size > 0 && ids[size - 1] < id) {
+				if (size == ids.length)
+					ids = Arrays.copyOf(ids, size * 2);
+				ids[size++] = id;
+				return;
+			}
+
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			if (position >= 0)
+				return;
+
+			position = -(position + 1);
+			if (size == ids.length)
+				ids = Arrays.copyOf(ids, size * 2);
+			System.arraycopy(ids, position, ids, position + 1, size - position);
+			ids[position] = id;
+			size++;
+		}
+
+		/**
+		 * Removes an id from the list.
+		 * @param id the id to remove
+		 */
+		private void remove(int id) {
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			if (position < 0)
+				return;
+
+			System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+			size--;
+		}
+
+		/**
+		 * Returns true if the list contains the given id.
+		 * @param id the id to look for
+		 * @return true if <code>id</code> is in the list
+		 */
+		private boolean contains(int id) {
+			return Arrays.binarySearch(ids, 0, size, id) >= 0;
+		}
+	}
+
+	/** Orders posting lists from shortest to longest */
+	private static final Comparator<Postings> SHORTEST_FIRST = new Comparator<Postings>() {
+		public int compare(Postings p1, Postings p2) {
+			return (p1.size < p2.size) ? -1:((p1.size == p2.size) ? 0:1);
+		}
+	};
+
+	/**
+	 * Adds a string to the index, replacing any string already indexed with the same id.
+	 *
+	 * @param id the id of the string
+	 * @param text the string to index
+	 */
+	public void put(int id, String text) {
+		remove(id);
+		while (texts.size() <= id)
+			texts.add(null);
+
+		String upperText = text.toUpperCase();
+		texts.set(id, upperText);
+		size++;
+		for (int i = 0; i + GRAM_LENGTH <= upperText.length(); i++) {
+			Long gram = pack(upperText, i);
+			Postings list = grams.get(gram);
+			if (list == null) {
+				list = new Postings();
+				grams.put(gram, list);
+			}
+			list.add(id);
+		}
+	}
+
+	/**
+	 * Removes the string with the given id from the index. Does nothing if there is no such string.
+	 *
+	 * @param id the id of the string
+	 */
+	public void remove(int id) {
+		String upperText = (id < texts.size()) ? texts.get(id):null;
+		if (upperText == null)
+			return;
+
+		texts.set(id, null);
+		size--;
+		for (int i = 0; i + GRAM_LENGTH <= upperText.length(); i++) {
+			Long gram = pack(upperText, i);
+			Postings list = grams.get(gram);
+			if (list != null) {
+				list.remove(id);
+				if (list.size == 0)
+					grams.remove(gram);
+			}
+		}
+	}
+
+	/**
+	 * Removes every string from the index.
+	 */
+	public void clear() {
+		grams.clear();
+		texts.clear();
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of strings in the index.
+	 * @return the value of <code>size</code>
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds every string which contains <code>query</code>, ignoring case.
+	 *
+	 * @param query the substring to look for
+	 * @return the ids of the matching strings, in ascending order
+	 */
+	public int[] search(String query) {
+		String upperQuery = query.toUpperCase();
+		int[] matches = new int[16];
+		int count = 0;
+
+		if (upperQuery.length() < GRAM_LENGTH) {
+			for (int id = 0; id < texts.size(); id++) {
+				String text = texts.get(id);
+				if (text != null && text.contains(upperQuery)) {
+					if (count == matches.length)
+						matches = Arrays.copyOf(matches, count * 2);
+					matches[count++] = id;
+				}
+			}
+			return Arrays.copyOf(matches, count);
+		}
+
+		int gramCount = upperQuery.length() - GRAM_LENGTH + 1;
+		Postings[] lists = new Postings[gramCount];
+		for (int i = 0; i < gramCount; i++) {
+			lists[i] = grams.get(pack(upperQuery, i));
+			if (lists[i] == null)
+				return new int[0];
+		}
+		Arrays.sort(lists, SHORTEST_FIRST);
+
+		Postings shortest = lists[0];
+		candidates:
+		for (int i = 0; i < shortest.size; i++) {
+			int id = shortest.ids[i];
+			for (int j = 1; j < lists.length; j++) {
+				if (lists[j] != shortest && !lists[j].contains(id))
+					continue candidates;
+			}
+			if (gramCount > 1 && !texts.get(id).contains(upperQuery))
+				continue;
+
+			if (count == matches.length)
+				matches = Arrays.copyOf(matches, count * 2);
+			matches[count++] = id;
+		}
+		return Arrays.copyOf(matches, count);
+	}
+
+	/**
+	 * Packs the three characters of <code>text</code> starting at <code>offset</code> into one value.
+	 *
+	 * @param text the text containing the trigram
+	 * @param offset the position of the first character of the trigram
+	 * @return the trigram packed into a <code>Long</code>
+	 */
+	private static Long pack(String text, int offset) {
+		return Long.valueOf(((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2));
+	}
+}